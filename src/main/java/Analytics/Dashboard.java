@@ -0,0 +1,155 @@
+package Analytics;
+
+import DAOs.DepartmentDAO;
+import DAOs.ReportsAnalyticsDAO;
+import Entities.Department;
+import Entities.DepartmentSummary;
+import Entities.Doctor;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * The hospital dashboard: every ReportsAnalyticsDAO report plus the summary of every department, run at the
+ * same time, each on its own virtual thread and its own pooled connection, so the whole takes about as long
+ * as the slowest query. At most maxConnections queries run at once, leaving the rest of the pool to
+ * interactive work; the others queue for a permit, and that queuing shows up as the part's wait time.
+ * A failing part does not fail the dashboard; it carries its error instead of a value.
+ */
+public class Dashboard {
+
+    /** One query's result (null if it failed), how long it queued for a connection and how long it ran. */
+    public record Part<T>(T value, Duration waited, Duration ran, String error) {
+        public boolean failed() {
+            return error != null;
+        }
+
+        @Override
+        public String toString() {
+            String timing = "%d ms (+%d ms waiting)".formatted(ran.toMillis(), waited.toMillis());
+            return failed() ? "FAILED after " + timing + ": " + error : timing;
+        }
+    }
+
+    public record Snapshot(
+            LocalDateTime takenAt,
+            Duration elapsed,
+            Part<HashMap<String, Integer>> averageLengthOfStay,
+            Part<HashMap<Doctor, Integer>> doctorPatientCounts,
+            Part<Integer> covidCases,
+            Part<HashMap<String, Double>> bedOccupancy,
+            Part<Double> averageAgeOfAdmitted,
+            Part<HashMap<String, Integer>> admissionsThisYear,
+            Map<String, Part<DepartmentSummary>> departments
+    ) {
+        /** What running the parts one after another would have taken. */
+        public Duration sequentialTime() {
+            Duration total = averageLengthOfStay.ran().plus(doctorPatientCounts.ran()).plus(covidCases.ran())
+                    .plus(bedOccupancy.ran()).plus(averageAgeOfAdmitted.ran()).plus(admissionsThisYear.ran());
+            for (Part<DepartmentSummary> part : departments.values()) {
+                total = total.plus(part.ran());
+            }
+            return total;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Query<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
+    private final ReportsAnalyticsDAO reportsDAO = new ReportsAnalyticsDAO();
+    private final DepartmentDAO departmentDAO = new DepartmentDAO();
+    private final DataSource dataSource;
+    private final Semaphore connections;
+
+    public Dashboard(DataSource dataSource, int maxConnections) {
+        if (maxConnections <= 0) {
+            throw new IllegalArgumentException("The dashboard needs at least one connection.");
+        }
+        this.dataSource = dataSource;
+        this.connections = new Semaphore(maxConnections, true);
+    }
+
+    /** Runs everything and waits for all of it; only listing the departments can throw. */
+    public Snapshot take() throws SQLException {
+        LocalDateTime takenAt = LocalDateTime.now();
+        long started = System.nanoTime();
+        List<Department> departmentList;
+        try (Connection connection = dataSource.getConnection()) {
+            departmentList = departmentDAO.findAll(connection);
+        }
+        int year = LocalDate.now().getYear();
+
+        Future<Part<HashMap<String, Integer>>> lengthOfStay;
+        Future<Part<HashMap<Doctor, Integer>>> doctorCounts;
+        Future<Part<Integer>> covid;
+        Future<Part<HashMap<String, Double>>> occupancy;
+        Future<Part<Double>> averageAge;
+        Future<Part<HashMap<String, Integer>>> admissions;
+        Map<String, Future<Part<DepartmentSummary>>> summaries = new LinkedHashMap<>();
+        // close() waits for every task, so all futures are done once the block exits
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            lengthOfStay = submit(executor, reportsDAO::averageLengthOfStayPerDepartment);
+            doctorCounts = submit(executor, reportsDAO::doctorPatientCounts);
+            covid = submit(executor, reportsDAO::countCovidCases);
+            occupancy = submit(executor, reportsDAO::bedOccupancyRatePerDepartment);
+            averageAge = submit(executor, reportsDAO::averageAgeOfAdmittedPatients);
+            admissions = submit(executor, c -> reportsDAO.admissionsPerDepartmentPerYear(year, c));
+            for (Department d : departmentList) {
+                summaries.put(d.getName(), submit(executor, c -> departmentDAO.departmentSummary(d.getName(), c)));
+            }
+        }
+
+        Map<String, Part<DepartmentSummary>> departments = new LinkedHashMap<>();
+        summaries.forEach((name, future) -> departments.put(name, future.resultNow()));
+        return new Snapshot(takenAt, Duration.ofNanos(System.nanoTime() - started),
+                lengthOfStay.resultNow(), doctorCounts.resultNow(), covid.resultNow(),
+                occupancy.resultNow(), averageAge.resultNow(), admissions.resultNow(), departments);
+    }
+
+    private <T> Future<Part<T>> submit(ExecutorService executor, Query<T> query) {
+        return executor.submit(() -> run(query));
+    }
+
+    /** Never throws: a failure becomes the part's error. */
+    private <T> Part<T> run(Query<T> query) {
+        long queued = System.nanoTime();
+        long started = -1;
+        try {
+            connections.acquire();
+            try (Connection connection = dataSource.getConnection()) {
+                started = System.nanoTime();
+                T value = query.run(connection);
+                return new Part<>(value, Duration.ofNanos(started - queued), Duration.ofNanos(System.nanoTime() - started), null);
+            } finally {
+                connections.release();
+            }
+        } catch (SQLException | RuntimeException e) {
+            return failed(queued, started, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failed(queued, started, "interrupted");
+        }
+    }
+
+    private static <T> Part<T> failed(long queued, long started, String error) {
+        long now = System.nanoTime();
+        if (started < 0) {
+            return new Part<>(null, Duration.ofNanos(now - queued), Duration.ZERO, error);
+        }
+        return new Part<>(null, Duration.ofNanos(started - queued), Duration.ofNanos(now - started), error);
+    }
+}
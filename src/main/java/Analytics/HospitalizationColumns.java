@@ -0,0 +1,134 @@
+package Analytics;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * An immutable, column-per-field copy of the hospitalization table: row r is ids[r], patients[r],
+ * departments[r], admits[r], discharges[r]. Times are LocalDateTime as epoch seconds (read as if UTC, which
+ * keeps them comparable without any zone rules); an open stay has discharge OPEN, so "still in at t" is
+ * simply admit < t && discharge >= t. Departments are stored as dense indexes into departmentIds, so the
+ * per-department totals of an aggregation are plain arrays.
+ * Aggregations scan the columns in parallel on the common fork-join pool: each worker fills its own
+ * totals arrays and the arrays are added together at the end, so no row is boxed and nothing is shared.
+ * Obtained from {@link HospitalizationSnapshot}; several aggregations on the same instance see the same data.
+ */
+public final class HospitalizationColumns {
+
+    static final long OPEN = Long.MAX_VALUE;
+
+    /** Figures for one department over [from, to); occupied is the number of stays open at to. */
+    public record DepartmentFigures(int departmentId, int admissions, int patients, int discharges,
+                                    double averageStayDays, int occupied) {
+    }
+
+    final int size;
+    final int[] ids;
+    final int[] patients;
+    final int[] departments;
+    final long[] admits;
+    final long[] discharges;
+    final int[] departmentIds;
+
+    HospitalizationColumns(int size, int[] ids, int[] patients, int[] departments, long[] admits, long[] discharges,
+                           int[] departmentIds) {
+        this.size = size;
+        this.ids = ids;
+        this.patients = patients;
+        this.departments = departments;
+        this.admits = admits;
+        this.discharges = discharges;
+        this.departmentIds = departmentIds;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Per department, ordered by department id: admissions, distinct patients admitted, discharges and their
+     * average length of stay in days, all within [from, to), and the stays still open at to.
+     */
+    public List<DepartmentFigures> summarize(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("Range start must be before its end.");
+        }
+        long start = seconds(from);
+        long end = seconds(to);
+
+        Totals totals = IntStream.range(0, size).parallel().collect(
+                () -> new Totals(departmentIds.length),
+                (t, row) -> t.add(row, start, end),
+                Totals::merge);
+
+        int[] distinctPatients = new int[departmentIds.length];
+        long[] pairs = IntStream.range(0, size).parallel()
+                .filter(row -> admits[row] >= start && admits[row] < end)
+                .mapToLong(row -> (long) departments[row] << 32 | (patients[row] & 0xFFFFFFFFL))
+                .distinct()
+                .toArray();
+        for (long pair : pairs) {
+            distinctPatients[(int) (pair >>> 32)]++;
+        }
+
+        List<DepartmentFigures> figures = new ArrayList<>();
+        IntStream.range(0, departmentIds.length)
+                .boxed()
+                .sorted((a, b) -> Integer.compare(departmentIds[a], departmentIds[b]))
+                .forEach(d -> figures.add(new DepartmentFigures(
+                        departmentIds[d],
+                        totals.admitted[d],
+                        distinctPatients[d],
+                        totals.discharged[d],
+                        totals.discharged[d] == 0 ? 0.0 : totals.staySeconds[d] / totals.discharged[d] / 86_400.0,
+                        totals.occupied[d])));
+        return figures;
+    }
+
+    static long seconds(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /** One worker's running totals, indexed by dense department index. */
+    private final class Totals {
+        final int[] admitted;
+        final int[] discharged;
+        final int[] occupied;
+        final double[] staySeconds;
+
+        Totals(int departmentCount) {
+            admitted = new int[departmentCount];
+            discharged = new int[departmentCount];
+            occupied = new int[departmentCount];
+            staySeconds = new double[departmentCount];
+        }
+
+        void add(int row, long start, long end) {
+            int d = departments[row];
+            long admit = admits[row];
+            long discharge = discharges[row];
+            if (admit >= start && admit < end) {
+                admitted[d]++;
+            }
+            if (discharge != OPEN && discharge >= start && discharge < end) {
+                discharged[d]++;
+                staySeconds[d] += discharge - admit;
+            }
+            if (admit < end && discharge >= end) {
+                occupied[d]++;
+            }
+        }
+
+        void merge(Totals other) {
+            for (int d = 0; d < admitted.length; d++) {
+                admitted[d] += other.admitted[d];
+                discharged[d] += other.discharged[d];
+                occupied[d] += other.occupied[d];
+                staySeconds[d] += other.staySeconds[d];
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package Analytics;
+
+import DAOs.HospitalizationDAO;
+import Entities.Hospitalization;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps a {@link HospitalizationColumns} copy of the hospitalization table for analytics, so ad-hoc
+ * slicing runs on this machine's cores instead of the OLTP database.
+ * load() reads the whole table once. refresh() only reads again what can have changed since the previous
+ * refresh started: stays that are open, or were admitted or discharged since then (minus OVERLAP, for
+ * writes that committed late). Stays that were open and did not come back are looked up by id, so
+ * back-dated discharges are not missed; if one of them has been deleted the snapshot is reloaded.
+ * What refresh() cannot see (closed stays that were deleted or corrected, back-dated admissions of
+ * already closed stays from a historical CSV import) is picked up by a full load(), which refresh()
+ * does itself once the last one is older than FULL_RELOAD_AFTER.
+ * Every refresh builds new columns and publishes them in one volatile write; callers holding the previous
+ * columns keep a consistent view.
+ */
+public class HospitalizationSnapshot {
+
+    // how far back each refresh looks again, for transactions still open while the previous refresh ran
+    private static final Duration OVERLAP = Duration.ofMinutes(10);
+    // the longest a change refresh() cannot see stays out of the columns
+    private static final Duration FULL_RELOAD_AFTER = Duration.ofHours(6);
+
+    private final HospitalizationDAO hospitalizationDAO = new HospitalizationDAO();
+    private volatile HospitalizationColumns columns;
+    private volatile LocalDateTime refreshedAt;
+    private volatile LocalDateTime loadedAt;
+
+    // writer-side state, guarded by this; rows never move, so a row number is valid in every later snapshot
+    private final Map<Integer, Integer> rowById = new HashMap<>();
+    private final Map<Integer, Integer> departmentIndex = new HashMap<>();
+    private final Set<Integer> openIds = new HashSet<>();
+    private boolean stale = true;
+
+    /** The latest columns, or null if nothing has been loaded yet. */
+    public HospitalizationColumns columns() {
+        return columns;
+    }
+
+    /** When the current columns were read from the database, or null if never. */
+    public LocalDateTime refreshedAt() {
+        return refreshedAt;
+    }
+
+    /** When the whole table was last read; changes refresh() cannot see are only included up to then. */
+    public LocalDateTime loadedAt() {
+        return loadedAt;
+    }
+
+    /** Reads the whole table. */
+    public synchronized HospitalizationColumns load(Connection connection) throws SQLException {
+        LocalDateTime started = LocalDateTime.now();
+        stale = true;
+        rowById.clear();
+        departmentIndex.clear();
+        openIds.clear();
+
+        Builder builder = new Builder(null);
+        hospitalizationDAO.streamAll(builder::put, connection);
+        HospitalizationColumns fresh = publish(builder, started);
+        loadedAt = started;
+        return fresh;
+    }
+
+    /**
+     * Brings the columns up to date, reading only what can have changed; loads them the first time and
+     * whenever the last load is older than FULL_RELOAD_AFTER.
+     */
+    public synchronized HospitalizationColumns refresh(Connection connection) throws SQLException {
+        if (stale || loadedAt.plus(FULL_RELOAD_AFTER).isBefore(LocalDateTime.now())) {
+            return load(connection);
+        }
+        LocalDateTime started = LocalDateTime.now();
+        stale = true; // until this refresh completes, the writer-side maps may be ahead of the columns
+
+        Set<Integer> wereOpen = new HashSet<>(openIds);
+        Builder builder = new Builder(columns);
+        hospitalizationDAO.streamChangedSince(refreshedAt.minus(OVERLAP), h -> {
+            wereOpen.remove(h.getHospitalizationId());
+            builder.put(h);
+        }, connection);
+
+        if (!wereOpen.isEmpty()) {
+            List<Hospitalization> closed = hospitalizationDAO.findByIds(wereOpen, connection);
+            if (closed.size() < wereOpen.size()) {
+                return load(connection); // a stay was deleted; rows cannot be removed in place
+            }
+            closed.forEach(builder::put);
+        }
+        return publish(builder, started);
+    }
+
+    private HospitalizationColumns publish(Builder builder, LocalDateTime started) {
+        HospitalizationColumns fresh = builder.build();
+        columns = fresh;
+        refreshedAt = started;
+        stale = false;
+        return fresh;
+    }
+
+    /** Copy-on-write: starts from copies of the previous columns and only ever writes to the copies. */
+    private final class Builder {
+        private int size;
+        private int[] ids;
+        private int[] patients;
+        private int[] departments;
+        private long[] admits;
+        private long[] discharges;
+        private int[] departmentIds;
+
+        Builder(HospitalizationColumns from) {
+            if (from == null) {
+                ids = new int[1024];
+                patients = new int[1024];
+                departments = new int[1024];
+                admits = new long[1024];
+                discharges = new long[1024];
+                departmentIds = new int[0];
+            } else {
+                size = from.size;
+                int capacity = Math.max(1024, from.size + (from.size >> 3));
+                ids = Arrays.copyOf(from.ids, capacity);
+                patients = Arrays.copyOf(from.patients, capacity);
+                departments = Arrays.copyOf(from.departments, capacity);
+                admits = Arrays.copyOf(from.admits, capacity);
+                discharges = Arrays.copyOf(from.discharges, capacity);
+                departmentIds = from.departmentIds;
+            }
+        }
+
+        void put(Hospitalization h) {
+            int id = h.getHospitalizationId();
+            Integer row = rowById.get(id);
+            if (row == null) {
+                row = size++;
+                if (row == ids.length) {
+                    grow();
+                }
+                rowById.put(id, row);
+            }
+            ids[row] = id;
+            patients[row] = h.getPatientId();
+            departments[row] = departmentIndex(h.getDepartmentId());
+            admits[row] = h.getAdmitDateTime() == null
+                    ? Long.MIN_VALUE
+                    : HospitalizationColumns.seconds(h.getAdmitDateTime());
+            if (h.getDischargeDateTime() == null) {
+                discharges[row] = HospitalizationColumns.OPEN;
+                openIds.add(id);
+            } else {
+                discharges[row] = HospitalizationColumns.seconds(h.getDischargeDateTime());
+                openIds.remove(id);
+            }
+        }
+
+        HospitalizationColumns build() {
+            return new HospitalizationColumns(size, ids, patients, departments, admits, discharges, departmentIds);
+        }
+
+        private int departmentIndex(int departmentId) {
+            Integer index = departmentIndex.get(departmentId);
+            if (index == null) {
+                index = departmentIds.length;
+                departmentIds = Arrays.copyOf(departmentIds, index + 1);
+                departmentIds[index] = departmentId;
+                departmentIndex.put(departmentId, index);
+            }
+            return index;
+        }
+
+        private void grow() {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            patients = Arrays.copyOf(patients, capacity);
+            departments = Arrays.copyOf(departments, capacity);
+            admits = Arrays.copyOf(admits, capacity);
+            discharges = Arrays.copyOf(discharges, capacity);
+        }
+    }
+}
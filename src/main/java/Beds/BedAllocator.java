@@ -0,0 +1,143 @@
+package Beds;
+
+import Entities.Department;
+import Entities.Hospitalization;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Which beds are taken in every department, kept in memory so admission can pick a free bed without
+ * counting rows. Beds are numbered 1..capacity; each department is a {@link Ward} bitmap, and every
+ * operation locks only the department it touches.
+ * This is a fast path, not the source of truth: the partial unique index in sql/bed_allocation.sql is
+ * what guarantees that two open hospitalizations never share a bed, even across application instances.
+ * When the two disagree (a bed taken by another instance, a rolled-back admission) the database wins and
+ * HospitalizationDAO corrects the bitmap; load() rebuilds everything from scratch.
+ * A change made in a transaction that may still roll back is not applied; the department is marked stale
+ * instead, reports -1 like an untracked one, and is rebuilt with reload() before its next admission.
+ * A department without a capacity has no numbered beds and is not tracked at all.
+ */
+public class BedAllocator {
+
+    private volatile Map<Integer, Ward> wards = new ConcurrentHashMap<>();
+    private final Set<Integer> stale = ConcurrentHashMap.newKeySet();
+    private volatile boolean loaded;
+
+    /** Replaces the current state with the given departments and their open hospitalizations. */
+    public void load(Collection<Department> departments, Collection<Hospitalization> open) {
+        Map<Integer, Ward> fresh = new ConcurrentHashMap<>();
+        for (Department d : departments) {
+            if (d.getCapacity() != null) {
+                fresh.put(d.getDepartmentId(), new Ward(d.getCapacity()));
+            }
+        }
+        for (Hospitalization h : open) {
+            Ward ward = fresh.get(h.getDepartmentId());
+            if (ward != null) {
+                ward.occupy(h.getBedNumber());
+            }
+        }
+        wards = fresh;
+        stale.clear();
+        loaded = true;
+    }
+
+    /** Replaces one department's bitmap, e.g. after it was marked stale. */
+    public void reload(int departmentId, Integer capacity, Collection<String> occupiedBeds) {
+        if (!loaded) {
+            return;
+        }
+        if (capacity == null) {
+            wards.remove(departmentId);
+            return;
+        }
+        Ward ward = new Ward(capacity);
+        occupiedBeds.forEach(ward::occupy);
+        wards.put(departmentId, ward);
+    }
+
+    /** The department's bitmap may no longer match the database and must be reloaded before it is used again. */
+    public void markStale(int departmentId) {
+        if (loaded) {
+            stale.add(departmentId);
+        }
+    }
+
+    /**
+     * True if the department was marked stale, clearing the mark; the caller then reloads it. A change marked
+     * after this call marks it again.
+     */
+    public boolean takeStale(int departmentId) {
+        return stale.remove(departmentId);
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /** True if the department has a bitmap to allocate beds from. */
+    public boolean tracks(int departmentId) {
+        return wards.containsKey(departmentId);
+    }
+
+    /** Takes the lowest-numbered free bed; returns null when the department is full or not tracked. */
+    public String allocate(int departmentId) {
+        Ward ward = wards.get(departmentId);
+        if (ward == null) {
+            return null;
+        }
+        int bed = ward.take();
+        return bed < 0 ? null : Integer.toString(bed);
+    }
+
+    /**
+     * Marks a specific bed as taken. Returns false if it already was.
+     * Bed numbers outside 1..capacity cannot be checked here and are always accepted.
+     */
+    public boolean claim(int departmentId, String bed) {
+        Ward ward = wards.get(departmentId);
+        return ward == null || ward.occupy(bed);
+    }
+
+    public void release(int departmentId, String bed) {
+        Ward ward = wards.get(departmentId);
+        if (ward != null) {
+            ward.vacate(bed);
+        }
+    }
+
+    /**
+     * Department created or its capacity changed; occupied beds are carried over. Removing the capacity
+     * stops tracking the department.
+     */
+    public void resize(int departmentId, Integer capacity) {
+        if (!loaded) {
+            return;
+        }
+        if (capacity == null) {
+            wards.remove(departmentId);
+            return;
+        }
+        wards.compute(departmentId, (id, old) -> old == null ? new Ward(capacity) : old.resized(capacity));
+    }
+
+    public void remove(int departmentId) {
+        wards.remove(departmentId);
+        stale.remove(departmentId);
+    }
+
+    /** Open hospitalizations in the department, or -1 if the department is not tracked or stale. */
+    public int occupied(int departmentId) {
+        Ward ward = stale.contains(departmentId) ? null : wards.get(departmentId);
+        return ward == null ? -1 : ward.occupied();
+    }
+
+    /** Free beds in the department, or -1 if the department is not tracked or stale. */
+    public int free(int departmentId) {
+        Ward ward = stale.contains(departmentId) ? null : wards.get(departmentId);
+        return ward == null ? -1 : ward.free();
+    }
+}
@@ -0,0 +1,71 @@
+package Beds;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One lock per department, created on first use, so work on different departments never contends.
+ * Locks are fair: with hundreds of clerks queued on a busy ward nobody is starved.
+ * Every acquisition is counted, and when the lock was not immediately free the wait is measured,
+ * so stats() shows how much time admissions spend queuing.
+ */
+public class DepartmentLocks {
+
+    /** Counters since startup; waits only include acquisitions that actually had to wait. */
+    public record Stats(long acquisitions, long contended, long totalWaitNanos, long maxWaitNanos) {
+        public double averageWaitMillis() {
+            return contended == 0 ? 0.0 : totalWaitNanos / 1_000_000.0 / contended;
+        }
+
+        @Override
+        public String toString() {
+            return "%d acquisitions, %d waited (avg %.2f ms, max %.2f ms)"
+                    .formatted(acquisitions, contended, averageWaitMillis(), maxWaitNanos / 1_000_000.0);
+        }
+    }
+
+    /** Releases the lock; meant for try-with-resources. */
+    @FunctionalInterface
+    public interface Held extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private final Map<Integer, ReentrantLock> locks = new ConcurrentHashMap<>();
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Long::max, 0);
+
+    public Held lock(int departmentId) {
+        ReentrantLock lock = locks.computeIfAbsent(departmentId, id -> new ReentrantLock(true));
+        acquisitions.increment();
+        if (!tryLockFairly(lock)) {
+            long start = System.nanoTime();
+            lock.lock();
+            long waited = System.nanoTime() - start;
+            contended.increment();
+            waitNanos.add(waited);
+            maxWaitNanos.accumulate(waited);
+        }
+        return lock::unlock;
+    }
+
+    /** tryLock() would barge ahead of queued threads; a zero timeout respects the queue. */
+    private static boolean tryLockFairly(ReentrantLock lock) {
+        try {
+            return lock.tryLock(0, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(acquisitions.sum(), contended.sum(), waitNanos.sum(), maxWaitNanos.get());
+    }
+}
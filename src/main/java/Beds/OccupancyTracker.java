@@ -0,0 +1,258 @@
+package Beds;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Open hospitalizations per department, counted once and then kept current from the notifications that
+ * the triggers in sql/occupancy_notify.sql send on every committed change, whichever application instance
+ * made it. Reads are a map lookup and an AtomicInteger read.
+ * A background thread holds one connection from the data source for LISTEN, for as long as the tracker
+ * runs. Counting and listening never double count: the counts are taken in a REPEATABLE READ transaction
+ * together with its snapshot, and a notification from a transaction that snapshot already saw is skipped.
+ * Notifications can still be lost (the connection drops, or a change slips past the triggers), so the
+ * tracker counts again from scratch every resyncInterval and after every reconnect; that interval is the
+ * longest a missed notification can go unnoticed. While it is not connected, occupied() returns -1 and
+ * callers fall back to counting themselves.
+ */
+public class OccupancyTracker implements AutoCloseable {
+
+    /** Counters since startup. */
+    public record Stats(boolean live, long applied, long skipped, long resyncs, long reconnects,
+                        LocalDateTime lastResync, String lastError) {
+        @Override
+        public String toString() {
+            return "%s, %d notifications applied, %d already counted, %d resyncs (last %s), %d reconnects%s"
+                    .formatted(live ? "live" : "not connected", applied, skipped, resyncs, lastResync, reconnects,
+                            lastError == null ? "" : ", last error: " + lastError);
+        }
+    }
+
+    private static final String CHANNEL = "occupancy";
+    private static final int POLL_MILLIS = 500;
+    // a silent connection is checked with a round-trip this often, so a dead one is noticed
+    private static final Duration HEARTBEAT = Duration.ofSeconds(10);
+    private static final Duration RECONNECT_DELAY = Duration.ofSeconds(5);
+
+    private static final String COUNT_SQL = """
+            SELECT d.department_id, COUNT(h.hospitalization_id) AS open_stays
+            FROM department d
+            LEFT JOIN hospitalization h
+              ON h.department_id = d.department_id
+             AND h.discharge_datetime IS NULL
+            GROUP BY d.department_id
+            """;
+
+    private final DataSource dataSource;
+    private final Duration resyncInterval;
+    private final Thread listener;
+    private volatile Map<Integer, AtomicInteger> counts = new ConcurrentHashMap<>();
+    private volatile boolean live;
+    private volatile boolean closed;
+
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder resyncs = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private volatile LocalDateTime lastResync;
+    private volatile String lastError;
+
+    // what the last count saw; only touched by the listener thread
+    private Snapshot counted;
+
+    public OccupancyTracker(DataSource dataSource, Duration resyncInterval) {
+        if (resyncInterval.isNegative() || resyncInterval.isZero()) {
+            throw new IllegalArgumentException("Resync interval must be positive.");
+        }
+        this.dataSource = dataSource;
+        this.resyncInterval = resyncInterval;
+        this.listener = new Thread(this::run, "occupancy-listener");
+        this.listener.setDaemon(true);
+        this.listener.start();
+    }
+
+    /** Open hospitalizations in the department, or -1 while the tracker is not connected and counted. */
+    public int occupied(int departmentId) {
+        if (!live) {
+            return -1;
+        }
+        AtomicInteger count = counts.get(departmentId);
+        return count == null ? 0 : count.get();
+    }
+
+    public boolean isLive() {
+        return live;
+    }
+
+    public Stats stats() {
+        return new Stats(live, applied.sum(), skipped.sum(), resyncs.sum(), reconnects.sum(), lastResync, lastError);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            listener.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (!closed) {
+            try (Connection connection = dataSource.getConnection()) {
+                try {
+                    connection.setAutoCommit(true);
+                    execute("LISTEN " + CHANNEL, connection);
+                    resync(connection);
+                    live = true;
+                    listen(connection);
+                } finally {
+                    live = false;
+                    unlisten(connection);
+                }
+            } catch (SQLException | RuntimeException e) {
+                lastError = e.getMessage();
+            }
+            if (!closed) {
+                reconnects.increment();
+                pause();
+            }
+        }
+    }
+
+    private void listen(Connection connection) throws SQLException {
+        PGConnection pg = connection.unwrap(PGConnection.class);
+        long lastHeard = System.nanoTime();
+        long lastCount = lastHeard;
+        while (!closed) {
+            PGNotification[] notifications = pg.getNotifications(POLL_MILLIS);
+            long now = System.nanoTime();
+            if (notifications != null && notifications.length > 0) {
+                for (PGNotification n : notifications) {
+                    apply(n.getParameter());
+                }
+                lastHeard = now;
+            } else if (now - lastHeard > HEARTBEAT.toNanos()) {
+                execute("SELECT 1", connection);
+                lastHeard = now;
+            }
+            if (now - lastCount > resyncInterval.toNanos()) {
+                resync(connection);
+                lastCount = now;
+            }
+        }
+    }
+
+    /** Counts from scratch; notifications arriving meanwhile are buffered by the driver and checked against the new snapshot. */
+    private void resync(Connection connection) throws SQLException {
+        int isolation = connection.getTransactionIsolation();
+        connection.setAutoCommit(false);
+        connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+        try {
+            Snapshot snapshot;
+            try (PreparedStatement ps = connection.prepareStatement("SELECT pg_current_snapshot()::text");
+                 ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                snapshot = Snapshot.parse(rs.getString(1));
+            }
+            Map<Integer, AtomicInteger> fresh = new ConcurrentHashMap<>();
+            try (PreparedStatement ps = connection.prepareStatement(COUNT_SQL);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    fresh.put(rs.getInt("department_id"), new AtomicInteger(rs.getInt("open_stays")));
+                }
+            }
+            connection.commit();
+            counts = fresh;
+            counted = snapshot;
+            resyncs.increment();
+            lastResync = LocalDateTime.now();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setTransactionIsolation(isolation);
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /** Payload: xid:event:department=delta,department=delta ... */
+    private void apply(String payload) {
+        String[] parts = payload.split(":", 3);
+        if (parts.length < 3) {
+            return;
+        }
+        if (counted.sees(Long.parseLong(parts[0]))) {
+            skipped.increment();
+            return;
+        }
+        Map<Integer, AtomicInteger> current = counts;
+        for (String change : parts[2].split(",")) {
+            int eq = change.indexOf('=');
+            int departmentId = Integer.parseInt(change.substring(0, eq));
+            int delta = Integer.parseInt(change.substring(eq + 1));
+            current.computeIfAbsent(departmentId, id -> new AtomicInteger()).addAndGet(delta);
+        }
+        applied.increment();
+    }
+
+    /** The connection goes back to the pool; it must not keep collecting notifications for its next user. */
+    private static void unlisten(Connection connection) {
+        try {
+            execute("UNLISTEN *", connection);
+        } catch (SQLException e) {
+            // a broken connection is discarded by the pool anyway
+        }
+    }
+
+    private static void execute(String sql, Connection connection) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.execute();
+        }
+    }
+
+    private void pause() {
+        try {
+            TimeUnit.MILLISECONDS.sleep(RECONNECT_DELAY.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            closed = true;
+        }
+    }
+
+    /** A pg_snapshot ("xmin:xmax:xip,xip,..."): which transactions' effects the count already includes. */
+    private record Snapshot(long xmin, long xmax, Set<Long> inProgress) {
+
+        static Snapshot parse(String text) {
+            String[] parts = text.split(":", 3);
+            Set<Long> inProgress = new HashSet<>();
+            if (parts.length == 3 && !parts[2].isEmpty()) {
+                for (String xid : parts[2].split(",")) {
+                    inProgress.add(Long.parseLong(xid));
+                }
+            }
+            return new Snapshot(Long.parseLong(parts[0]), Long.parseLong(parts[1]), inProgress);
+        }
+
+        /** Only asked about committed transactions, since NOTIFY is delivered on commit. */
+        boolean sees(long xid) {
+            return xid < xmin || (xid < xmax && !inProgress.contains(xid));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package Beds;
+
+/**
+ * Free-bed bitmap for one department. Bit b-1 of free is set while bed b is free, and bit w of summary is
+ * set while word w of free still has a free bed, so the next free bed is two numberOfTrailingZeros calls
+ * away (one more summary word per 4096 beds). A 100-bed ward fits in three longs.
+ * Open hospitalizations whose bed_number is not a number in 1..capacity (typed by hand before the
+ * allocator existed) cannot be placed in the bitmap; they are only counted, so occupancy stays right.
+ * All methods lock the ward itself, which is the per-department lock.
+ */
+final class Ward {
+
+    private final int capacity;
+    private final long[] free;
+    private final long[] summary;
+    private int taken;
+    private int unmanaged;
+
+    Ward(int capacity) {
+        this.capacity = capacity;
+        this.free = new long[(capacity + 63) >>> 6];
+        this.summary = new long[(free.length + 63) >>> 6];
+        for (int bed = 1; bed <= capacity; bed++) {
+            setFree(bed);
+        }
+    }
+
+    /** Takes the lowest-numbered free bed, or returns -1 if there is none. */
+    synchronized int take() {
+        for (int s = 0; s < summary.length; s++) {
+            if (summary[s] != 0) {
+                int word = (s << 6) + Long.numberOfTrailingZeros(summary[s]);
+                int bed = (word << 6) + Long.numberOfTrailingZeros(free[word]) + 1;
+                clearFree(bed);
+                taken++;
+                return bed;
+            }
+        }
+        return -1;
+    }
+
+    /** Marks the bed taken; false if it already was. Unparseable or out-of-range beds are just counted. */
+    synchronized boolean occupy(String bedNumber) {
+        int bed = parse(bedNumber);
+        if (bed < 0) {
+            unmanaged++;
+            return true;
+        }
+        if (!isFree(bed)) {
+            return false;
+        }
+        clearFree(bed);
+        taken++;
+        return true;
+    }
+
+    synchronized void vacate(String bedNumber) {
+        int bed = parse(bedNumber);
+        if (bed < 0) {
+            unmanaged = Math.max(0, unmanaged - 1);
+        } else if (!isFree(bed)) {
+            setFree(bed);
+            taken--;
+        }
+    }
+
+    synchronized int occupied() {
+        return taken + unmanaged;
+    }
+
+    synchronized int free() {
+        return capacity - taken;
+    }
+
+    /** A copy with the new capacity; taken beds past the new capacity become unmanaged. */
+    synchronized Ward resized(int newCapacity) {
+        Ward copy = new Ward(newCapacity);
+        for (int bed = 1; bed <= capacity; bed++) {
+            if (!isFree(bed)) {
+                copy.occupy(Integer.toString(bed));
+            }
+        }
+        copy.unmanaged += unmanaged;
+        return copy;
+    }
+
+    private int parse(String bedNumber) {
+        if (bedNumber == null) {
+            return -1;
+        }
+        try {
+            int bed = Integer.parseInt(bedNumber.trim());
+            return bed >= 1 && bed <= capacity ? bed : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private boolean isFree(int bed) {
+        int bit = bed - 1;
+        return (free[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    private void setFree(int bed) {
+        int bit = bed - 1;
+        int word = bit >>> 6;
+        free[word] |= 1L << bit;
+        summary[word >>> 6] |= 1L << word;
+    }
+
+    private void clearFree(int bed) {
+        int bit = bed - 1;
+        int word = bit >>> 6;
+        free[word] &= ~(1L << bit);
+        if (free[word] == 0) {
+            summary[word >>> 6] &= ~(1L << word);
+        }
+    }
+}
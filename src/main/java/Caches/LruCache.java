@@ -0,0 +1,110 @@
+package Caches;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Thread-safe, size-bounded LRU map with an optional time-to-live.
+ * Misses are not cached: a null from get() always means "go to the database".
+ * A ttlMillis of 0 keeps entries until they are evicted or invalidated.
+ */
+public class LruCache<K, V> {
+
+    private record Entry<V>(V value, long expiresAtNanos) {
+    }
+
+    private static final long NO_EXPIRY = Long.MIN_VALUE;
+
+    private volatile long ttlNanos;
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private int maxSize;
+
+    public LruCache(int maxSize) {
+        this(maxSize, 0);
+    }
+
+    public LruCache(int maxSize, long ttlMillis) {
+        if (maxSize < 0 || ttlMillis < 0) {
+            throw new IllegalArgumentException("Cache size and TTL cannot be negative.");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    public synchronized V get(K key) {
+        Entry<V> e = entries.get(key);
+        if (e != null && e.expiresAtNanos != NO_EXPIRY && System.nanoTime() - e.expiresAtNanos > 0) {
+            entries.remove(key);
+            evictions.increment();
+            e = null;
+        }
+        if (e == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return e.value;
+    }
+
+    public synchronized void put(K key, V value) {
+        if (maxSize == 0) {
+            return;
+        }
+        long ttl = ttlNanos;
+        entries.put(key, new Entry<>(value, ttl == 0 ? NO_EXPIRY : System.nanoTime() + ttl));
+        trim();
+    }
+
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    /** Drops every entry whose value matches, e.g. all cached rows of one patient under any key. */
+    public synchronized void invalidateIf(Predicate<? super V> condition) {
+        entries.values().removeIf(e -> condition.test(e.value));
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    public synchronized void setMaxSize(int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Cache size cannot be negative.");
+        }
+        this.maxSize = maxSize;
+        trim();
+    }
+
+    /** Applies to entries put from now on; existing entries keep the expiry they were stored with. */
+    public void setTtlMillis(long ttlMillis) {
+        if (ttlMillis < 0) {
+            throw new IllegalArgumentException("TTL cannot be negative.");
+        }
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), entries.size());
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+        while (entries.size() > maxSize && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.increment();
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package DAOs;
+
+import Entities.AdmissionCounts;
+import Entities.AdmissionMatrix;
+
+import java.sql.*;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Admissions and discharges per department over any date range, at day, week, month or year granularity,
+ * read from the per-day rollup of sql/admission_rollup.sql. A query reads at most one row per day and
+ * department in the range, however many stays those days had, and never touches hospitalization.
+ * Triggers keep the rollup current, and installing sql/admission_rollup.sql fills it from history;
+ * backfill() recomputes a range whose history was changed behind the triggers' back.
+ */
+public class AdmissionRollupDAO {
+
+    /** How counts are grouped; each period starts on the day date_trunc gives (weeks start on Monday). */
+    public enum Granularity {
+        DAY("day"),
+        WEEK("week"),
+        MONTH("month"),
+        YEAR("year");
+
+        private final String field;
+
+        Granularity(String field) {
+            this.field = field;
+        }
+
+        /** The first day of the period containing the date. */
+        public LocalDate start(LocalDate date) {
+            return switch (this) {
+                case DAY -> date;
+                case WEEK -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MONTH -> date.withDayOfMonth(1);
+                case YEAR -> date.withDayOfYear(1);
+            };
+        }
+
+        /** The first day of the period after the one starting on periodStart. */
+        public LocalDate next(LocalDate periodStart) {
+            return switch (this) {
+                case DAY -> periodStart.plusDays(1);
+                case WEEK -> periodStart.plusWeeks(1);
+                case MONTH -> periodStart.plusMonths(1);
+                case YEAR -> periodStart.plusYears(1);
+            };
+        }
+    }
+
+    // the date_trunc field comes from the enum, never from the caller, so formatting it in is safe
+    private static final String COUNTS_SQL = """
+            SELECT date_trunc('%s', day::timestamp)::date AS period, department_id,
+                   SUM(admissions) AS admissions, SUM(discharges) AS discharges
+            FROM admission_rollup_day
+            WHERE day >= ? AND day < ?
+            %s
+            GROUP BY period, department_id
+            HAVING SUM(admissions) <> 0 OR SUM(discharges) <> 0
+            ORDER BY period, department_id
+            """;
+
+    private static final String EXTENT_SQL = """
+            SELECT MIN(lo) AS lo, MAX(hi) AS hi
+            FROM (SELECT MIN(admit_datetime)::date AS lo, MAX(admit_datetime)::date AS hi FROM hospitalization
+                  UNION ALL
+                  SELECT MIN(discharge_datetime)::date, MAX(discharge_datetime)::date FROM hospitalization
+                  UNION ALL
+                  SELECT MIN(day), MAX(day) FROM admission_rollup_day) e
+            """;
+
+    private static final String CLEAR_SQL = "DELETE FROM admission_rollup_day WHERE day >= ? AND day < ?";
+
+    // both halves are plain range predicates, so they use the indexes on admit_datetime and discharge_datetime
+    private static final String BACKFILL_SQL = """
+            INSERT INTO admission_rollup_day (day, department_id, admissions, discharges)
+            SELECT day, department_id, SUM(a), SUM(d)
+            FROM (SELECT admit_datetime::date AS day, department_id, 1 AS a, 0 AS d
+                  FROM hospitalization
+                  WHERE admit_datetime >= ? AND admit_datetime < ?
+                  UNION ALL
+                  SELECT discharge_datetime::date, department_id, 0, 1
+                  FROM hospitalization
+                  WHERE discharge_datetime >= ? AND discharge_datetime < ?) c
+            GROUP BY day, department_id
+            """;
+
+    /**
+     * Counts per period and department for the days from (inclusive) to to (exclusive), in period order.
+     * The first and last periods only include the days inside the range. departmentId may be null for all.
+     */
+    public List<AdmissionCounts> counts(LocalDate from, LocalDate to, Granularity granularity,
+                                        Integer departmentId, Connection connection) throws SQLException {
+        checkRange(from, to);
+        String sql = COUNTS_SQL.formatted(granularity.field, departmentId == null ? "" : "AND department_id = ?");
+        List<AdmissionCounts> result = new ArrayList<>();
+
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setDate(1, Date.valueOf(from));
+            ps.setDate(2, Date.valueOf(to));
+            if (departmentId != null) {
+                ps.setInt(3, departmentId);
+            }
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    result.add(new AdmissionCounts(
+                            rs.getDate("period").toLocalDate(),
+                            rs.getInt("department_id"),
+                            rs.getLong("admissions"),
+                            rs.getLong("discharges")));
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Every department against every period of the range, e.g. ten years by month, from one query. */
+    public AdmissionMatrix matrix(LocalDate from, LocalDate to, Granularity granularity,
+                                  Connection connection) throws SQLException {
+        List<AdmissionCounts> counts = counts(from, to, granularity, null, connection);
+
+        List<LocalDate> periods = new ArrayList<>();
+        Map<LocalDate, Integer> periodIndex = new HashMap<>();
+        for (LocalDate p = granularity.start(from); p.isBefore(to); p = granularity.next(p)) {
+            periodIndex.put(p, periods.size());
+            periods.add(p);
+        }
+        TreeSet<Integer> departments = new TreeSet<>();
+        for (AdmissionCounts c : counts) {
+            departments.add(c.departmentId());
+        }
+        List<Integer> departmentIds = new ArrayList<>(departments);
+        Map<Integer, Integer> departmentIndex = new HashMap<>();
+        for (int i = 0; i < departmentIds.size(); i++) {
+            departmentIndex.put(departmentIds.get(i), i);
+        }
+
+        long[][] admissions = new long[periods.size()][departmentIds.size()];
+        long[][] discharges = new long[periods.size()][departmentIds.size()];
+        for (AdmissionCounts c : counts) {
+            int p = periodIndex.get(c.period());
+            int d = departmentIndex.get(c.departmentId());
+            admissions[p][d] = c.admissions();
+            discharges[p][d] = c.discharges();
+        }
+        return new AdmissionMatrix(periods, departmentIds, admissions, discharges);
+    }
+
+    /**
+     * Recomputes the rollup for the days from (inclusive) to to (exclusive) from hospitalization, one
+     * calendar month per transaction, so each pass reads a bounded slice through the datetime indexes.
+     * Writers to hospitalization wait for the month being rebuilt, not for the whole backfill. With
+     * autocommit off the caller's transaction is used for every month instead.
+     * Returns the number of rollup rows written.
+     */
+    public long backfill(LocalDate from, LocalDate to, Connection connection) throws SQLException {
+        checkRange(from, to);
+        long written = 0;
+        LocalDate chunkStart = from;
+        while (chunkStart.isBefore(to)) {
+            LocalDate nextMonth = chunkStart.withDayOfMonth(1).plusMonths(1);
+            LocalDate chunkEnd = nextMonth.isBefore(to) ? nextMonth : to;
+            written += backfillChunk(chunkStart, chunkEnd, connection);
+            chunkStart = chunkEnd;
+        }
+        return written;
+    }
+
+    /** Backfills every day that has an admission or discharge, and clears rollup days that no longer do. */
+    public long backfillAll(Connection connection) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(EXTENT_SQL);
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            Date lo = rs.getDate("lo");
+            Date hi = rs.getDate("hi");
+            if (lo == null) {
+                return 0;
+            }
+            return backfill(lo.toLocalDate(), hi.toLocalDate().plusDays(1), connection);
+        }
+    }
+
+    private long backfillChunk(LocalDate from, LocalDate to, Connection connection) throws SQLException {
+        boolean ownTransaction = connection.getAutoCommit();
+        if (ownTransaction) {
+            connection.setAutoCommit(false);
+        }
+        try {
+            // blocks hospitalization writers, whose triggers would change these rows, and other backfills
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "LOCK TABLE hospitalization, admission_rollup_day IN SHARE ROW EXCLUSIVE MODE")) {
+                ps.execute();
+            }
+            try (PreparedStatement ps = connection.prepareStatement(CLEAR_SQL)) {
+                ps.setDate(1, Date.valueOf(from));
+                ps.setDate(2, Date.valueOf(to));
+                ps.executeUpdate();
+            }
+            int written;
+            try (PreparedStatement ps = connection.prepareStatement(BACKFILL_SQL)) {
+                Timestamp start = Timestamp.valueOf(from.atStartOfDay());
+                Timestamp end = Timestamp.valueOf(to.atStartOfDay());
+                ps.setTimestamp(1, start);
+                ps.setTimestamp(2, end);
+                ps.setTimestamp(3, start);
+                ps.setTimestamp(4, end);
+                written = ps.executeUpdate();
+            }
+            if (ownTransaction) {
+                connection.commit();
+            }
+            return written;
+        } catch (SQLException e) {
+            if (ownTransaction) {
+                connection.rollback();
+            }
+            throw e;
+        } finally {
+            if (ownTransaction) {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static void checkRange(LocalDate from, LocalDate to) {
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new IllegalArgumentException("The range must start before it ends.");
+        }
+    }
+}
@@ -1,33 +1,54 @@
 package DAOs;
 
+import Database.IdAllocators;
 import Entities.*;
+import Scheduling.AppointmentIndex;
+import Scheduling.SlotFinder;
 
 import java.sql.*;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public class AppointmentDAO {
+
+    // upcoming appointments per doctor, shared by all AppointmentDAO instances like the entity caches
+    private static final AppointmentIndex SCHEDULES = new AppointmentIndex();
+    // SQLState for exclusion_violation: sql/appointment_overlap.sql caught a booking this process did not know about
+    private static final String EXCLUSION_VIOLATION = "23P01";
+    // outpatient hours offered by the free-slot search
+    private static final SlotFinder SLOTS = new SlotFinder(SCHEDULES, LocalTime.of(8, 0), LocalTime.of(16, 0));
+
+    /** Throws IllegalArgumentException if the doctor already has an appointment overlapping this one. */
     public Appointment insert(Appointment a, Connection conn) throws SQLException {
         String sql = """
-            INSERT INTO appointment (patient_id, doctor_id, appointment_datetime, reason)
-            VALUES (?, ?, ?, ?)
+            INSERT INTO appointment (patient_id, doctor_id, appointment_datetime, reason, appointment_id)
+            VALUES (?, ?, ?, ?, ?)
             """;
 
-        try (PreparedStatement ps = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        int id = IdAllocators.forTable("appointment", "appointment_id").next(conn);
+        AppointmentIndex.Reservation slot =
+                SCHEDULES.reserve(a.getDoctorID(), id, a.getAppointmentDate(), doctorId -> loadSchedule(doctorId, conn));
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
 
             ps.setInt(1, a.getPatientID());
             ps.setInt(2, a.getDoctorID());
             ps.setTimestamp(3, Timestamp.valueOf(a.getAppointmentDate()));
             ps.setString(4, a.getReason());
+            ps.setInt(5, id);
 
             ps.executeUpdate();
-
-            try (ResultSet keys = ps.getGeneratedKeys()) {
-                if (keys.next()) {
-                    a.setAppointmentID(keys.getInt(1));
-                }
-            }
+        } catch (SQLException e) {
+            abandon(slot, a.getDoctorID(), e);
+            throw e;
         }
+        settle(slot, id, a.getDoctorID(), conn);
+        a.setAppointmentID(id);
         return a;
     }
 
@@ -62,6 +83,45 @@ public class AppointmentDAO {
         }
     }
 
+    /** Cursor-based variant of findAll: rows are pulled fetchSize at a time and handed to the action in date order. */
+    public int streamAll(int fetchSize, Consumer<Appointment> action, Connection conn) throws SQLException {
+        String sql = "SELECT * FROM appointment ORDER BY appointment_datetime";
+        return CursorReader.forEach(sql, fetchSize, this::extractAppointment, action, conn);
+    }
+
+    public int streamAll(Consumer<Appointment> action, Connection conn) throws SQLException {
+        return streamAll(CursorReader.DEFAULT_FETCH_SIZE, action, conn);
+    }
+
+    /**
+     * Keyset pagination in (appointment_datetime, appointment_id) order; the id breaks ties between
+     * appointments booked for the same minute. Pass null for the first page.
+     */
+    public Page<Appointment> findPage(String afterToken, int limit, Connection conn) throws SQLException {
+        PageToken.checkLimit(limit);
+        String sql = afterToken == null
+                ? "SELECT * FROM appointment ORDER BY appointment_datetime, appointment_id LIMIT ?"
+                : "SELECT * FROM appointment WHERE (appointment_datetime, appointment_id) > (?, ?) " +
+                  "ORDER BY appointment_datetime, appointment_id LIMIT ?";
+        List<Appointment> rows = new ArrayList<>();
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = 1;
+            if (afterToken != null) {
+                ps.setTimestamp(i++, Timestamp.valueOf(PageToken.timestamp(afterToken)));
+                ps.setInt(i++, PageToken.id(afterToken));
+            }
+            ps.setInt(i, limit + 1);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(extractAppointment(rs));
+                }
+            }
+        }
+        return Page.fromOverfetch(rows, limit, a -> PageToken.of(a.getAppointmentDate(), a.getAppointmentID()));
+    }
+
     public List<Appointment> findByDoctor(int doctorId, Connection conn) throws SQLException {
         List<Appointment> list = new ArrayList<>();
 
@@ -117,24 +177,57 @@ public class AppointmentDAO {
             return list;
         }
     }
+    /** Appointments from the start of day from through the end of day to, in date order. */
     public List<Appointment> listAppointmentsInDateInterval(Date from, Date to, Connection connection) throws SQLException{
-        String sql = "Select * from appointment where appointment_datetime Between ? and ?;";
         List<Appointment> list = new ArrayList<>();
+        streamRange(from.toLocalDate().atStartOfDay(), to.toLocalDate().plusDays(1).atStartOfDay(),
+                null, null, list::add, connection);
+        return list;
+    }
 
-        try(PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setDate(1, from);
-            ps.setDate(2, to);
-            ResultSet rs = ps.executeQuery();
-
-            while(rs.next()) {
-                Appointment ap = extractAppointment(rs);
-                list.add(ap);
+    /**
+     * Streams the appointments with from <= appointment_datetime < to in (appointment_datetime, appointment_id)
+     * order through a server-side cursor, optionally only one doctor's or one department's (pass null for any).
+     * The half-open range keeps consecutive extracts from overlapping, and is served by
+     * idx_appointment_datetime_id, or idx_appointment_doctor_datetime_id for a single doctor.
+     */
+    public int streamRange(LocalDateTime from, LocalDateTime to, Integer doctorId, Integer departmentId, int fetchSize,
+                           Consumer<Appointment> action, Connection conn) throws SQLException {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("Range start must be before its end.");
+        }
+        StringBuilder sql = new StringBuilder("SELECT a.* FROM appointment a");
+        if (departmentId != null) {
+            sql.append(" JOIN doctor d ON d.doctor_id = a.doctor_id");
+        }
+        sql.append(" WHERE a.appointment_datetime >= ? AND a.appointment_datetime < ?");
+        if (doctorId != null) {
+            sql.append(" AND a.doctor_id = ?");
+        }
+        if (departmentId != null) {
+            sql.append(" AND d.department_id = ?");
+        }
+        sql.append(" ORDER BY a.appointment_datetime, a.appointment_id");
+
+        return CursorReader.forEach(sql.toString(), ps -> {
+            int i = 1;
+            ps.setTimestamp(i++, Timestamp.valueOf(from));
+            ps.setTimestamp(i++, Timestamp.valueOf(to));
+            if (doctorId != null) {
+                ps.setInt(i++, doctorId);
+            }
+            if (departmentId != null) {
+                ps.setInt(i, departmentId);
             }
+        }, fetchSize, this::extractAppointment, action, conn);
+    }
 
-        }
-        return list;
+    public int streamRange(LocalDateTime from, LocalDateTime to, Integer doctorId, Integer departmentId,
+                           Consumer<Appointment> action, Connection conn) throws SQLException {
+        return streamRange(from, to, doctorId, departmentId, CursorReader.DEFAULT_FETCH_SIZE, action, conn);
     }
 
+    /** Throws IllegalArgumentException if the new slot overlaps another appointment of the doctor. */
     public int update(Appointment a, Connection conn) throws SQLException {
         String sql = """
                 UPDATE appointment
@@ -142,6 +235,9 @@ public class AppointmentDAO {
                 WHERE appointment_id = ?
                 """;
 
+        AppointmentIndex.Reservation slot = SCHEDULES.reserve(a.getDoctorID(), a.getAppointmentID(),
+                a.getAppointmentDate(), doctorId -> loadSchedule(doctorId, conn));
+        int rows;
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, a.getPatientID());
             ps.setInt(2, a.getDoctorID());
@@ -149,8 +245,17 @@ public class AppointmentDAO {
             ps.setString(4, a.getReason());
             ps.setInt(5, a.getAppointmentID());
 
-            return ps.executeUpdate();
+            rows = ps.executeUpdate();
+        } catch (SQLException e) {
+            abandon(slot, a.getDoctorID(), e);
+            throw e;
+        }
+        if (rows == 0) {
+            slot.cancel();
+        } else {
+            settle(slot, a.getAppointmentID(), a.getDoctorID(), conn);
         }
+        return rows;
     }
 
     public int delete(int appointmentId, Connection conn) throws SQLException {
@@ -158,7 +263,73 @@ public class AppointmentDAO {
 
         try (PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, appointmentId);
-            return ps.executeUpdate();
+            int rows = ps.executeUpdate();
+            if (rows > 0) {
+                SCHEDULES.remove(appointmentId);
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * The earliest limit free slots in [from, to) during outpatient hours with any of the given doctors,
+     * each with the doctors free at that time. Answered from the in-memory calendars; only doctors not
+     * booked or searched since startup are read from the database.
+     */
+    public List<SlotFinder.FreeSlot> findFreeSlots(Collection<Integer> doctorIds, LocalDateTime from, LocalDateTime to,
+                                                   int limit, Connection conn) throws SQLException {
+        return SLOTS.find(doctorIds, from, to, limit, doctorId -> loadSchedule(doctorId, conn));
+    }
+
+    /**
+     * The doctor's appointments that have not ended yet, as the schedule index wants them.
+     */
+    private Map<Integer, LocalDateTime> loadSchedule(int doctorId, Connection conn) throws SQLException {
+        String sql = "SELECT appointment_id, appointment_datetime FROM appointment WHERE doctor_id = ? AND appointment_datetime > ?";
+        Map<Integer, LocalDateTime> schedule = new HashMap<>();
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, doctorId);
+            ps.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now().minus(AppointmentIndex.SLOT)));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    schedule.put(rs.getInt("appointment_id"), rs.getTimestamp("appointment_datetime").toLocalDateTime());
+                }
+            }
+        }
+        return schedule;
+    }
+
+    /**
+     * In autocommit mode the write is final, so the index takes the new slot. Inside a caller's transaction
+     * it may still roll back; the appointment is dropped from the index and the doctor reloaded on the
+     * next booking instead.
+     */
+    private void settle(AppointmentIndex.Reservation slot, int appointmentId, int doctorId, Connection conn)
+            throws SQLException {
+        if (conn.getAutoCommit()) {
+            slot.confirm();
+        } else {
+            slot.cancel();
+            SCHEDULES.remove(appointmentId);
+            SCHEDULES.forget(doctorId);
+        }
+    }
+
+    private void abandon(AppointmentIndex.Reservation slot, int doctorId, SQLException e) {
+        slot.cancel();
+        if (EXCLUSION_VIOLATION.equals(e.getSQLState())) {
+            SCHEDULES.forget(doctorId);
+        }
+    }
+
+    /**
+     * For appointments written without this class, e.g. by a CSV import: drops the doctors' schedules
+     * from the index so they are reloaded from the database on their next booking.
+     */
+    public static void forgetSchedules(Collection<Integer> doctorIds) {
+        for (int doctorId : doctorIds) {
+            SCHEDULES.forget(doctorId);
         }
     }
 
@@ -207,15 +378,14 @@ public class AppointmentDAO {
         return null;
     }
 
+    // the constructor skips the setters' checks: rows already stored may be in the past
     private Appointment extractAppointment(ResultSet rs) throws SQLException {
-        Appointment a = new Appointment();
-        a.setAppointmentID(rs.getInt("appointment_id"));
-        a.setPatientID(rs.getInt("patient_id"));
-        a.setDoctorID(rs.getInt("doctor_id"));
-        Timestamp ts = rs.getTimestamp("appointment_datetime");
-        a.setAppointmentDate(ts.toLocalDateTime());
-        a.setReason(rs.getString("reason"));
-        return a;
+        return new Appointment(
+                rs.getInt("patient_id"),
+                rs.getInt("appointment_id"),
+                rs.getInt("doctor_id"),
+                rs.getTimestamp("appointment_datetime").toLocalDateTime(),
+                rs.getString("reason"));
     }
 
     private AppointmentSummary extractAppointmentSummary(ResultSet rs) throws SQLException {
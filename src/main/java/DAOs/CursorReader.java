@@ -0,0 +1,72 @@
+package DAOs;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+/**
+ * Runs a query through a server-side cursor and hands each row to a callback.
+ * pgjdbc only honours setFetchSize inside a transaction, so when the connection is in auto-commit mode
+ * the read is wrapped in its own short transaction; otherwise it joins the caller's transaction.
+ */
+final class CursorReader {
+
+    static final int DEFAULT_FETCH_SIZE = 1000;
+
+    @FunctionalInterface
+    interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    @FunctionalInterface
+    interface Binder {
+        void bind(PreparedStatement ps) throws SQLException;
+    }
+
+    private CursorReader() {
+    }
+
+    static <T> int forEach(String sql, int fetchSize, RowMapper<T> mapper, Consumer<? super T> action,
+                           Connection connection) throws SQLException {
+        return forEach(sql, ps -> { }, fetchSize, mapper, action, connection);
+    }
+
+    /** Returns the number of rows handed to the action. */
+    static <T> int forEach(String sql, Binder binder, int fetchSize, RowMapper<T> mapper,
+                           Consumer<? super T> action, Connection connection) throws SQLException {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("Fetch size must be positive.");
+        }
+        boolean ownTransaction = connection.getAutoCommit();
+        if (ownTransaction) {
+            connection.setAutoCommit(false);
+        }
+
+        int rows = 0;
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setFetchSize(fetchSize);
+            binder.bind(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    action.accept(mapper.map(rs));
+                    rows++;
+                }
+            }
+            if (ownTransaction) {
+                connection.commit();
+            }
+        } catch (SQLException | RuntimeException e) {
+            if (ownTransaction) {
+                connection.rollback();
+            }
+            throw e;
+        } finally {
+            if (ownTransaction) {
+                connection.setAutoCommit(true);
+            }
+        }
+        return rows;
+    }
+}
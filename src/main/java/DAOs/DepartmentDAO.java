@@ -1,45 +1,84 @@
 package DAOs;
 
+import Caches.CacheStats;
+import Caches.LruCache;
+import Database.IdAllocators;
 import Entities.Department;
 import Entities.DepartmentSummary;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class DepartmentDAO {
 
+    // Departments almost never change, so lookups are served from memory. Shared by all instances;
+    // every write below invalidates what it touches.
+    private static final int DEFAULT_CACHE_SIZE = 500;
+    private static final LruCache<Integer, Department> BY_ID = new LruCache<>(DEFAULT_CACHE_SIZE);
+    private static final LruCache<String, Department> BY_NAME = new LruCache<>(DEFAULT_CACHE_SIZE);
+
+    private static final PatchUpdate PATCH = new PatchUpdate("department", "department_id",
+            Set.of("name", "capacity"));
+
+    public static void setCacheMaxSize(int maxSize) {
+        BY_ID.setMaxSize(maxSize);
+        BY_NAME.setMaxSize(maxSize);
+    }
+
+    public static CacheStats cacheStats() {
+        return BY_ID.stats().plus(BY_NAME.stats());
+    }
+
+    public void preloadCache(Connection connection) throws SQLException {
+        for (Department d : findAll(connection)) {
+            cache(d);
+        }
+    }
+
     public Department insertDepartment(Department d, Connection connection) throws SQLException {
-        String sql = "INSERT INTO department (name, capacity) VALUES (?, ?)";
+        String sql = "INSERT INTO department (name, capacity, department_id) VALUES (?, ?, ?)";
 
-        try (PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        int id = IdAllocators.forTable("department", "department_id").next(connection);
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
             ps.setString(1, d.getName());
             if (d.getCapacity() != null) {
                 ps.setInt(2, d.getCapacity());
             } else {
                 ps.setNull(2, Types.INTEGER);
             }
+            ps.setInt(3, id);
 
             ps.executeUpdate();
-
-            try (ResultSet rs = ps.getGeneratedKeys()) {
-                if (rs.next()) {
-                    d.setDepartmentId(rs.getInt(1));
-                }
-            }
         }
+        d.setDepartmentId(id);
+        if (connection.getAutoCommit()) {
+            cache(d);
+        }
+        HospitalizationDAO.departmentResized(id, d.getCapacity(), connection);
         return d;
     }
 
 
     public Department findById(int id, Connection connection) throws SQLException {
+        Department cached = BY_ID.get(id);
+        if (cached != null) {
+            return copy(cached);
+        }
         String sql = "SELECT * FROM department WHERE department_id = ?";
         try (PreparedStatement ps = connection.prepareStatement(sql)) {
             ps.setInt(1, id);
 
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
-                    return extractDepartment(rs);
+                    Department d = extractDepartment(rs);
+                    cache(d);
+                    return d;
                 } else {
                     return null;
                 }
@@ -47,14 +86,55 @@ public class DepartmentDAO {
         }
     }
 
+    // Batch lookup used when rendering lists: one query for all department ids instead of one per row
+    public Map<Integer, Department> findByIds(Collection<Integer> ids, Connection connection) throws SQLException {
+        Map<Integer, Department> result = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : ids) {
+            Department cached = BY_ID.get(id);
+            if (cached != null) {
+                result.put(id, copy(cached));
+            } else {
+                missing.add(id);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+        String sql = "SELECT * FROM department WHERE department_id = ANY(?)";
+
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            Array idArray = connection.createArrayOf("integer", missing.toArray());
+            try {
+                ps.setArray(1, idArray);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Department row = extractDepartment(rs);
+                        result.put(row.getDepartmentId(), row);
+                        cache(row);
+                    }
+                }
+            } finally {
+                idArray.free();
+            }
+        }
+        return result;
+    }
+
     public Department findByName(String name, Connection connection) throws SQLException {
+        Department cached = BY_NAME.get(name.toLowerCase());
+        if (cached != null) {
+            return copy(cached);
+        }
         String sql = "SELECT * FROM department WHERE LOWER(name) = LOWER(?)";
         try (PreparedStatement ps = connection.prepareStatement(sql)) {
             ps.setString(1, name);
 
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
-                    return extractDepartment(rs);
+                    Department d = extractDepartment(rs);
+                    cache(d);
+                    return d;
                 } else {
                     return null;
                 }
@@ -76,22 +156,36 @@ public class DepartmentDAO {
         return list;
     }
 
-    public int updateDepartmentField(int departmentId, String field, Object value, Connection connection) throws SQLException {
-        String sql = "UPDATE department SET " + field + " = ? WHERE department_id = ?";
-
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setObject(1, value);
-            ps.setInt(2, departmentId);
-            return ps.executeUpdate();
+    public int updateDepartmentFields(int departmentId, Map<String, ?> changes, Connection connection) throws SQLException {
+        try {
+            int rows = PATCH.apply(departmentId, changes, connection);
+            if (rows > 0 && changes.containsKey("capacity")) {
+                Object capacity = changes.get("capacity");
+                HospitalizationDAO.departmentResized(departmentId,
+                        capacity == null ? null : Integer.valueOf(capacity.toString()), connection);
+            }
+            return rows;
+        } finally {
+            invalidate(departmentId);
         }
     }
 
+    public int updateDepartmentField(int departmentId, String field, Object value, Connection connection) throws SQLException {
+        return updateDepartmentFields(departmentId, Collections.singletonMap(field, value), connection);
+    }
+
 
     public int deleteById(int id, Connection connection) throws SQLException {
         String sql = "DELETE FROM department WHERE department_id = ?";
         try (PreparedStatement ps = connection.prepareStatement(sql)) {
             ps.setInt(1, id);
-            return ps.executeUpdate();
+            int rows = ps.executeUpdate();
+            if (rows > 0) {
+                HospitalizationDAO.departmentRemoved(id, connection);
+            }
+            return rows;
+        } finally {
+            invalidate(id);
         }
     }
 
@@ -150,7 +244,13 @@ public class DepartmentDAO {
         return null;
     }
 
+    /** Served from the in-memory bed map when it is loaded; otherwise counted in department_full_view. */
     public int occupancy(String deparmentName, Connection connection) throws SQLException {
+        Department d = findByName(deparmentName, connection);
+        int occupied = d == null ? -1 : HospitalizationDAO.occupiedBeds(d.getDepartmentId());
+        if (occupied >= 0) {
+            return occupied;
+        }
         String sql = "Select current_occupancy from department_full_view where LOWER(department_name) = LOWER(?);";
         try(PreparedStatement ps = connection.prepareStatement(sql)) {
             ps.setString(1, deparmentName);
@@ -162,6 +262,23 @@ public class DepartmentDAO {
         return 0;
     }
 
+    // ===== Cache helpers =====
+    private static void cache(Department d) {
+        Department c = copy(d);
+        BY_ID.put(c.getDepartmentId(), c);
+        BY_NAME.put(c.getName().toLowerCase(), c);
+    }
+
+    private static void invalidate(int departmentId) {
+        BY_ID.invalidate(departmentId);
+        BY_NAME.invalidateIf(d -> d.getDepartmentId() == departmentId);
+        DoctorDAO.invalidateDepartmentListings();
+    }
+
+    private static Department copy(Department d) {
+        return new Department(d.getDepartmentId(), d.getName(), d.getCapacity());
+    }
+
     // ===== Helper mapper =====
     private Department extractDepartment(ResultSet rs) throws SQLException {
         Department d = new Department();
@@ -1,41 +1,87 @@
 package DAOs;
 
 
+import Caches.CacheStats;
+import Caches.LruCache;
+import Database.IdAllocators;
 import Entities.Doctor;
+import Entities.Page;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class DoctorDAO {
 
+    // Doctors are reference data: read constantly, changed rarely. The caches are shared by every
+    // DoctorDAO instance and kept coherent by the write methods below (and by DepartmentDAO for listings).
+    private static final int DEFAULT_CACHE_SIZE = 1000;
+    private static final LruCache<Integer, Doctor> BY_ID = new LruCache<>(DEFAULT_CACHE_SIZE);
+    private static final LruCache<String, List<Doctor>> BY_DEPARTMENT_NAME = new LruCache<>(DEFAULT_CACHE_SIZE);
+
+    private static final PatchUpdate PATCH = new PatchUpdate("doctor", "doctor_id",
+            Set.of("first_name", "last_name", "specialty", "phone", "department_id"));
+
+    /** Caps each doctor cache at maxSize entries; 0 turns caching off. */
+    public static void setCacheMaxSize(int maxSize) {
+        BY_ID.setMaxSize(maxSize);
+        BY_DEPARTMENT_NAME.setMaxSize(maxSize);
+    }
+
+    public static CacheStats cacheStats() {
+        return BY_ID.stats().plus(BY_DEPARTMENT_NAME.stats());
+    }
+
+    /** Department renames and deletes change which doctors a department name resolves to. */
+    static void invalidateDepartmentListings() {
+        BY_DEPARTMENT_NAME.invalidateAll();
+    }
+
+    /** Loads every doctor into the cache once, so later lookups by id never reach the database. */
+    public void preloadCache(Connection connection) throws SQLException {
+        for (Doctor d : findAll(connection)) {
+            BY_ID.put(d.getDoctorId(), copy(d));
+        }
+    }
+
     /** INSERT doctor and return generated Entities.Doctor object */
     public Doctor insertDoctor(Doctor doctor, Connection connection) throws SQLException {
         String sql = """
-                INSERT INTO doctor(first_name, last_name, specialty, phone, department_id)
-                VALUES (?, ?, ?, ?, ?)
+                INSERT INTO doctor(first_name, last_name, specialty, phone, department_id, doctor_id)
+                VALUES (?, ?, ?, ?, ?, ?)
                 """;
 
-        try (PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        int id = IdAllocators.forTable("doctor", "doctor_id").next(connection);
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
             ps.setString(1, doctor.getFirstName());
             ps.setString(2, doctor.getLastName());
             ps.setString(3, doctor.getSpecialty());
             ps.setString(4, doctor.getPhone());
             ps.setInt(5, doctor.getDepartmentId());
+            ps.setInt(6, id);
 
             ps.executeUpdate();
-
-            try (ResultSet keys = ps.getGeneratedKeys()) {
-                if (keys.next()) {
-                    doctor.setDoctorId(keys.getInt(1));
-                }
-            }
         }
+        doctor.setDoctorId(id);
+        // write-through only once the row is committed; inside a transaction a rollback could undo it
+        if (connection.getAutoCommit()) {
+            BY_ID.put(doctor.getDoctorId(), copy(doctor));
+        }
+        invalidateDepartmentListings();
         return doctor;
     }
 
     /** FIND by ID */
     public Doctor findById(int doctorId, Connection connection) throws SQLException {
+        Doctor cached = BY_ID.get(doctorId);
+        if (cached != null) {
+            return copy(cached);
+        }
         String sql = "SELECT * FROM doctor WHERE doctor_id = ?";
 
         try (PreparedStatement ps = connection.prepareStatement(sql)) {
@@ -44,11 +90,48 @@ public class DoctorDAO {
 
             if (rs.next()) {
                 Doctor d = extractDoctor(rs);
+                BY_ID.put(doctorId, copy(d));
                 return d;
             }
             return null;
         }
     }
+
+    /** FIND many by ID in a single query, keyed by doctor_id */
+    public Map<Integer, Doctor> findByIds(Collection<Integer> ids, Connection connection) throws SQLException {
+        Map<Integer, Doctor> result = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : ids) {
+            Doctor cached = BY_ID.get(id);
+            if (cached != null) {
+                result.put(id, copy(cached));
+            } else {
+                missing.add(id);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+        String sql = "SELECT * FROM doctor WHERE doctor_id = ANY(?)";
+
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            Array idArray = connection.createArrayOf("integer", missing.toArray());
+            try {
+                ps.setArray(1, idArray);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Doctor row = extractDoctor(rs);
+                        result.put(row.getDoctorId(), row);
+                        BY_ID.put(row.getDoctorId(), copy(row));
+                    }
+                }
+            } finally {
+                idArray.free();
+            }
+        }
+        return result;
+    }
+
     public int numberOfDoctors(Connection connection) throws SQLException {
         String sql = "Select Count(*) from doctor;";
         try(PreparedStatement ps = connection.prepareStatement(sql)) {
@@ -75,17 +158,47 @@ public class DoctorDAO {
         return list;
     }
 
+    /** LIST doctors one page at a time, ordered by doctor_id (null token = first page) */
+    public Page<Doctor> findPage(String afterToken, int limit, Connection connection) throws SQLException {
+        PageToken.checkLimit(limit);
+        String sql = afterToken == null
+                ? "SELECT * FROM doctor ORDER BY doctor_id LIMIT ?"
+                : "SELECT * FROM doctor WHERE doctor_id > ? ORDER BY doctor_id LIMIT ?";
+        List<Doctor> rows = new ArrayList<>();
+
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            int i = 1;
+            if (afterToken != null) {
+                ps.setInt(i++, PageToken.id(afterToken));
+            }
+            ps.setInt(i, limit + 1);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(extractDoctor(rs));
+                }
+            }
+        }
+        return Page.fromOverfetch(rows, limit, d -> PageToken.of(d.getDoctorId()));
+    }
+
+    /**
+     * Updates any subset of the doctor's columns by ID in one statement.
+     */
+    public int updateDoctorFields(int doctorId, Map<String, ?> changes, Connection connection) throws SQLException {
+        try {
+            return PATCH.apply(doctorId, changes, connection);
+        } finally {
+            BY_ID.invalidate(doctorId);
+            invalidateDepartmentListings();
+        }
+    }
+
     /**
      * Updates a single column of doctor by ID.
      */
     public int updateDoctorField(int doctorId, String field, Object value, Connection connection) throws SQLException {
-        String sql = "UPDATE doctor SET " + field + " = ? WHERE doctor_id = ?";
-
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setObject(1, value);
-            ps.setInt(2, doctorId);
-            return ps.executeUpdate();
-        }
+        return updateDoctorFields(doctorId, Collections.singletonMap(field, value), connection);
     }
 
 
@@ -97,9 +210,17 @@ public class DoctorDAO {
         try (PreparedStatement ps = connection.prepareStatement(sql)) {
             ps.setInt(1, doctorId);
             return ps.executeUpdate();
+        } finally {
+            BY_ID.invalidate(doctorId);
+            invalidateDepartmentListings();
         }
     }
     public List<Doctor> findDoctorsByDepartmentName(String departmentName, Connection connection) throws SQLException {
+        String key = departmentName.toLowerCase();
+        List<Doctor> cached = BY_DEPARTMENT_NAME.get(key);
+        if (cached != null) {
+            return copyAll(cached);
+        }
         List<Doctor> list = new ArrayList<>();
         String sql = "Select * from doctor where department_id = (Select department_id from " +
                 "department where LOWER(name) = LOWER(?));";
@@ -113,6 +234,7 @@ public class DoctorDAO {
                 list.add(d);
             }
         }
+        BY_DEPARTMENT_NAME.put(key, copyAll(list));
         return list;
     }
 
@@ -132,6 +254,20 @@ public class DoctorDAO {
         return list;
     }
 
+    /** Cached doctors are never handed out directly, so callers can't mutate the shared copy */
+    private static Doctor copy(Doctor d) {
+        return new Doctor(d.getDoctorId(), d.getFirstName(), d.getLastName(),
+                d.getSpecialty(), d.getPhone(), d.getDepartmentId());
+    }
+
+    private static List<Doctor> copyAll(List<Doctor> doctors) {
+        List<Doctor> list = new ArrayList<>(doctors.size());
+        for (Doctor d : doctors) {
+            list.add(copy(d));
+        }
+        return list;
+    }
+
     /** Extract Entities.Doctor from ResultSet (private helper) */
     private Doctor extractDoctor(ResultSet rs) throws SQLException {
         Doctor d = new Doctor();
@@ -1,41 +1,272 @@
 package DAOs;
 
+import Beds.BedAllocator;
+import Beds.DepartmentLocks;
+import Beds.OccupancyTracker;
+import Database.IdAllocators;
 import Entities.CurrentHospitalizationSummary;
 import Entities.Department;
+import Entities.Hospitalization;
+import Entities.Page;
 import Entities.Patient;
 
 
 import java.sql.*;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public class HospitalizationDAO {
+
+    private static final PatchUpdate PATCH = new PatchUpdate("hospitalization", "hospitalization_id",
+            Set.of("patient_id", "department_id", "admit_datetime", "discharge_datetime", "bed_number", "reason"));
+    private static final Set<String> BED_COLUMNS = Set.of("department_id", "bed_number", "discharge_datetime");
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    // one allocator for the whole application, like the DAO caches; empty until preloadBeds runs
+    private static final BedAllocator BEDS = new BedAllocator();
+    private static final DepartmentLocks ADMISSION_LOCKS = new DepartmentLocks();
+    // set by the application once it starts listening for occupancy changes
+    private static volatile OccupancyTracker OCCUPANCY;
+
+    public static void useOccupancyTracker(OccupancyTracker tracker) {
+        OCCUPANCY = tracker;
+    }
+
+    public static DepartmentLocks.Stats admissionLockStats() {
+        return ADMISSION_LOCKS.stats();
+    }
+
+    /** Builds the free-bed bitmaps from the departments and the open hospitalizations. */
+    public void preloadBeds(Connection connection) throws SQLException {
+        BEDS.load(new DepartmentDAO().findAll(connection), findCurrentHospitalizations(connection));
+    }
+
+    /** Free beds left in the department, or -1 if the bed map is not loaded. */
+    public static int freeBeds(int departmentId) {
+        return BEDS.free(departmentId);
+    }
+
+    /**
+     * Open hospitalizations in the department: from the occupancy tracker while it is live (it sees every
+     * application instance), otherwise from this process's bed map; -1 if neither is available.
+     */
+    public static int occupiedBeds(int departmentId) {
+        int live = liveOccupancy(departmentId);
+        return live >= 0 ? live : BEDS.occupied(departmentId);
+    }
+
+    /** Open hospitalizations in the department from the occupancy tracker, or -1 if it is not live. */
+    public static int liveOccupancy(int departmentId) {
+        OccupancyTracker tracker = OCCUPANCY;
+        return tracker == null ? -1 : tracker.occupied(departmentId);
+    }
+
+    public static OccupancyTracker.Stats occupancyStats() {
+        OccupancyTracker tracker = OCCUPANCY;
+        return tracker == null ? null : tracker.stats();
+    }
+
+    static void departmentResized(int departmentId, Integer capacity, Connection connection) throws SQLException {
+        if (connection.getAutoCommit()) {
+            BEDS.resize(departmentId, capacity);
+        } else {
+            BEDS.markStale(departmentId);
+        }
+    }
+
+    static void departmentRemoved(int departmentId, Connection connection) throws SQLException {
+        if (connection.getAutoCommit()) {
+            BEDS.remove(departmentId);
+        } else {
+            BEDS.markStale(departmentId);
+        }
+    }
+
+    /**
+     * Admits the patient, refusing with IllegalArgumentException when the department is at capacity.
+     * Admissions to the same department are serialised twice: by a per-department lock inside this process
+     * (cheap queuing, wait times in admissionLockStats) and by SELECT ... FOR UPDATE on the department row,
+     * which makes the capacity count correct across application instances. Only that one department row is
+     * locked, never the hospitalization table. In auto-commit mode the admission is its own transaction and
+     * commits before the lock is released; otherwise the row lock is held until the caller commits, and
+     * the department's bed map is marked stale, since the caller may still roll back.
+     */
     public Hospitalization insert(Hospitalization h, Connection connection) throws SQLException {
+        boolean ownTransaction = connection.getAutoCommit();
+        DepartmentLocks.Held held = ADMISSION_LOCKS.lock(h.getDepartmentId());
+        try {
+            if (ownTransaction) {
+                connection.setAutoCommit(false);
+            }
+            boolean placed = false;
+            try {
+                Integer capacity = lockDepartment(h.getDepartmentId(), connection);
+                checkRoom(h.getDepartmentId(), capacity, 1, connection);
+                refreshBeds(h.getDepartmentId(), capacity, connection);
+                placeAndInsert(h, connection);
+                placed = true;
+                if (ownTransaction) {
+                    connection.commit();
+                } else {
+                    BEDS.markStale(h.getDepartmentId());
+                }
+                return h;
+            } catch (SQLException | RuntimeException e) {
+                if (ownTransaction) {
+                    connection.rollback();
+                }
+                if (placed) {
+                    BEDS.release(h.getDepartmentId(), h.getBedNumber());
+                }
+                throw e;
+            } finally {
+                if (ownTransaction) {
+                    connection.setAutoCommit(true);
+                }
+            }
+        } finally {
+            held.close();
+        }
+    }
+
+    /** Locks the department row until the transaction ends; returns its capacity, null if none is recorded. */
+    private Integer lockDepartment(int departmentId, Connection connection) throws SQLException {
+        String sql = "SELECT capacity FROM department WHERE department_id = ? FOR UPDATE";
+
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setInt(1, departmentId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    throw new IllegalArgumentException("Department " + departmentId + " does not exist.");
+                }
+                int capacity = rs.getInt(1);
+                return rs.wasNull() ? null : capacity;
+            }
+        }
+    }
+
+    /** Refuses with IllegalArgumentException unless arriving more open stays fit; the department row must be locked. */
+    private void checkRoom(int departmentId, Integer capacity, int arriving, Connection connection) throws SQLException {
+        if (capacity == null) {
+            return; // no capacity recorded, nothing to enforce
+        }
+        String sql = "SELECT count(*) FROM hospitalization WHERE department_id = ? AND discharge_datetime IS NULL";
+
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setInt(1, departmentId);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                int open = rs.getInt(1);
+                if (open + arriving > capacity) {
+                    throw new IllegalArgumentException(arriving == 1
+                            ? "Department " + departmentId + " is full (" + open + "/" + capacity + " beds)."
+                            : "Department " + departmentId + " has " + Math.max(0, capacity - open)
+                              + " free beds for " + arriving + " patients (" + open + "/" + capacity + " beds).");
+                }
+            }
+        }
+    }
+
+    /** Rebuilds the department's bed map from its open hospitalizations if a caller's transaction marked it stale. */
+    private void refreshBeds(int departmentId, Integer capacity, Connection connection) throws SQLException {
+        if (!BEDS.takeStale(departmentId)) {
+            return;
+        }
+        String sql = "SELECT bed_number FROM hospitalization WHERE department_id = ? AND discharge_datetime IS NULL";
+        List<String> beds = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setInt(1, departmentId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    beds.add(rs.getString(1));
+                }
+            }
+        } catch (SQLException e) {
+            BEDS.markStale(departmentId);
+            throw e;
+        }
+        BEDS.reload(departmentId, capacity, beds);
+    }
+
+    /** Applies a bed map change once it is committed; in a caller's transaction marks the departments stale instead. */
+    private static void updateBeds(Connection connection, Runnable change, int... departmentIds) throws SQLException {
+        if (connection.getAutoCommit()) {
+            change.run();
+        } else {
+            for (int departmentId : departmentIds) {
+                BEDS.markStale(departmentId);
+            }
+        }
+    }
+
+    /**
+     * With no bed number the next free bed of the department is assigned from the bed map, unless the
+     * department has no capacity and so no bed map; a bed number typed in is checked against it. If the database reports the bed taken anyway (another application
+     * instance got it first) the bed stays marked and the next free bed is tried, after rolling back to
+     * a savepoint so the transaction survives the failed INSERT.
+     */
+    private void placeAndInsert(Hospitalization h, Connection connection) throws SQLException {
+        boolean assignBed = BEDS.tracks(h.getDepartmentId())
+                && (h.getBedNumber() == null || h.getBedNumber().isBlank());
+        while (true) {
+            if (assignBed) {
+                String bed = BEDS.allocate(h.getDepartmentId());
+                if (bed == null) {
+                    throw new IllegalArgumentException("Department " + h.getDepartmentId() + " has no free bed.");
+                }
+                h.setBedNumber(bed);
+            } else if (!BEDS.claim(h.getDepartmentId(), h.getBedNumber())) {
+                throw new IllegalArgumentException("Bed " + h.getBedNumber() + " is already occupied.");
+            }
+            Savepoint beforeInsert = connection.setSavepoint();
+            try {
+                insertRow(h, connection);
+                connection.releaseSavepoint(beforeInsert);
+                return;
+            } catch (SQLException e) {
+                connection.rollback(beforeInsert);
+                boolean bedTaken = UNIQUE_VIOLATION.equals(e.getSQLState());
+                if (!bedTaken) {
+                    BEDS.release(h.getDepartmentId(), h.getBedNumber());
+                }
+                if (!(bedTaken && assignBed)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private Hospitalization insertRow(Hospitalization h, Connection connection) throws SQLException {
         String sql = """
         INSERT INTO hospitalization
-            (patient_id, department_id, admit_datetime, bed_number, reason)
-        VALUES (?, ?, ?, ?, ?)
+            (patient_id, department_id, admit_datetime, bed_number, reason, hospitalization_id)
+        VALUES (?, ?, ?, ?, ?, ?)
         """;
 
-        try (PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        int id = IdAllocators.forTable("hospitalization", "hospitalization_id").next(connection);
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
 
             ps.setInt(1, h.getPatientId());
             ps.setInt(2, h.getDepartmentId());
             ps.setTimestamp(3, Timestamp.valueOf(h.getAdmitDateTime()));
             ps.setString(4, h.getBedNumber());
             ps.setString(5, h.getReason());
+            ps.setInt(6, id);
 
             int rows = ps.executeUpdate();
             if (rows == 0) {
                 throw new SQLException("Insert failed: no rows affected.");
             }
-
-            try (ResultSet keys = ps.getGeneratedKeys()) {
-                if (keys.next()) {
-                    h.setHospitalizationId(keys.getInt(1));
-                }
-            }
         }
+        h.setHospitalizationId(id);
         return h;
     }
 
@@ -84,6 +315,80 @@ public class HospitalizationDAO {
         return list;
     }
 
+    // ---------- STREAM ALL (cursor, constant memory) ----------
+    public int streamAll(int fetchSize, Consumer<Hospitalization> action, Connection connection) throws SQLException {
+        String sql = "SELECT * FROM hospitalization ORDER BY admit_datetime DESC";
+        return CursorReader.forEach(sql, fetchSize, this::extractHospitalization, action, connection);
+    }
+
+    public int streamAll(Consumer<Hospitalization> action, Connection connection) throws SQLException {
+        return streamAll(CursorReader.DEFAULT_FETCH_SIZE, action, connection);
+    }
+
+    /**
+     * Streams the stays that are still open, or were admitted or discharged at or after since: everything
+     * an incremental reader has to look at again. Served by the open-bed partial index and the
+     * admit_datetime and discharge_datetime indexes.
+     */
+    public int streamChangedSince(LocalDateTime since, Consumer<Hospitalization> action, Connection connection) throws SQLException {
+        String sql = """
+                SELECT * FROM hospitalization
+                WHERE discharge_datetime IS NULL OR admit_datetime >= ? OR discharge_datetime >= ?
+                """;
+        Timestamp ts = Timestamp.valueOf(since);
+        return CursorReader.forEach(sql, ps -> {
+            ps.setTimestamp(1, ts);
+            ps.setTimestamp(2, ts);
+        }, CursorReader.DEFAULT_FETCH_SIZE, this::extractHospitalization, action, connection);
+    }
+
+    /** The stays with the given ids that still exist, in no particular order. */
+    public List<Hospitalization> findByIds(Collection<Integer> ids, Connection connection) throws SQLException {
+        String sql = "SELECT * FROM hospitalization WHERE hospitalization_id = ANY(?)";
+        List<Hospitalization> list = new ArrayList<>();
+
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            Array idArray = connection.createArrayOf("integer", ids.toArray());
+            try {
+                ps.setArray(1, idArray);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        list.add(extractHospitalization(rs));
+                    }
+                }
+            } finally {
+                idArray.free();
+            }
+        }
+        return list;
+    }
+
+    // ---------- PAGE (most recent admissions first) ----------
+    public Page<Hospitalization> findPage(String afterToken, int limit, Connection connection) throws SQLException {
+        PageToken.checkLimit(limit);
+        String sql = afterToken == null
+                ? "SELECT * FROM hospitalization ORDER BY admit_datetime DESC, hospitalization_id DESC LIMIT ?"
+                : "SELECT * FROM hospitalization WHERE (admit_datetime, hospitalization_id) < (?, ?) " +
+                  "ORDER BY admit_datetime DESC, hospitalization_id DESC LIMIT ?";
+        List<Hospitalization> rows = new ArrayList<>();
+
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            int i = 1;
+            if (afterToken != null) {
+                ps.setTimestamp(i++, Timestamp.valueOf(PageToken.timestamp(afterToken)));
+                ps.setInt(i++, PageToken.id(afterToken));
+            }
+            ps.setInt(i, limit + 1);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(extractHospitalization(rs));
+                }
+            }
+        }
+        return Page.fromOverfetch(rows, limit, h -> PageToken.of(h.getAdmitDateTime(), h.getHospitalizationId()));
+    }
+
     public List<Hospitalization> findByPatientId(int patientId, Connection connection) throws SQLException {
         List<Hospitalization> list = new ArrayList<>();
         String sql = "SELECT * FROM hospitalization WHERE patient_id = ? ORDER BY admit_datetime DESC";
@@ -130,35 +435,282 @@ public class HospitalizationDAO {
         return list;
     }
 
-    public int updateHospitalizationField(int hospitalizationId, String field, Object value, Connection connection) throws SQLException {
-        String sql = "UPDATE hospitalization SET " + field + " = ? WHERE hospitalization_id = ?";
-
-        try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setObject(1, value);
-            ps.setInt(2, hospitalizationId);
-            return ps.executeUpdate();
+    public int updateHospitalizationFields(int hospitalizationId, Map<String, ?> changes, Connection connection) throws SQLException {
+        if (Collections.disjoint(changes.keySet(), BED_COLUMNS)) {
+            return PATCH.apply(hospitalizationId, changes, connection);
         }
+        // the edit may move, discharge or re-open the stay; compare before and after to fix the bed map
+        Hospitalization before = findById(hospitalizationId, connection);
+        int rows = PATCH.apply(hospitalizationId, changes, connection);
+        if (rows > 0) {
+            Hospitalization after = findById(hospitalizationId, connection);
+            if (before != null && before.getDischargeDateTime() == null) {
+                updateBeds(connection, () -> BEDS.release(before.getDepartmentId(), before.getBedNumber()),
+                        before.getDepartmentId());
+            }
+            if (after != null && after.getDischargeDateTime() == null) {
+                updateBeds(connection, () -> BEDS.claim(after.getDepartmentId(), after.getBedNumber()),
+                        after.getDepartmentId());
+            }
+        }
+        return rows;
+    }
+
+    public int updateHospitalizationField(int hospitalizationId, String field, Object value, Connection connection) throws SQLException {
+        return updateHospitalizationFields(hospitalizationId, Collections.singletonMap(field, value), connection);
     }
 
     // ---------- DELETE ----------
     public int deleteById(int id, Connection connection) throws SQLException {
-        String sql = "DELETE FROM hospitalization WHERE hospitalization_id = ?";
+        String sql = """
+                DELETE FROM hospitalization WHERE hospitalization_id = ?
+                RETURNING hospitalization_id, department_id, bed_number, discharge_datetime
+                """;
 
         try (PreparedStatement ps = connection.prepareStatement(sql)) {
             ps.setInt(1, id);
-            return ps.executeUpdate(); // 0 = nothing deleted, 1 = deleted
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    return 0; // nothing deleted
+                }
+                if (rs.getTimestamp("discharge_datetime") == null) {
+                    int departmentId = rs.getInt("department_id");
+                    String bed = rs.getString("bed_number");
+                    updateBeds(connection, () -> BEDS.release(departmentId, bed), departmentId);
+                }
+                return 1;
+            }
         }
     }
 
+    /** Discharges one open hospitalization; returns 0 if it is unknown or already discharged. */
     public int dischargePatient(int hospitalizationId, Connection connection) throws SQLException {
-        String sql = "UPDATE hospitalization SET discharge_datetime = NOW() WHERE hospitalization_id = ?";
+        return dischargeAll(List.of(hospitalizationId), connection).size();
+    }
 
+    /**
+     * Discharges every listed hospitalization that is still open with one UPDATE.
+     * Returns the ids actually discharged; ids that are unknown or already discharged are left out.
+     */
+    public List<Integer> dischargeAll(Collection<Integer> hospitalizationIds, Connection connection) throws SQLException {
+        if (hospitalizationIds.isEmpty()) {
+            return List.of();
+        }
+        String sql = """
+                UPDATE hospitalization SET discharge_datetime = NOW()
+                WHERE hospitalization_id = ANY(?) AND discharge_datetime IS NULL
+                RETURNING hospitalization_id, department_id, bed_number
+                """;
+        List<Integer> discharged = new ArrayList<>();
         try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setInt(1, hospitalizationId);
-            return ps.executeUpdate();
+            Array idArray = connection.createArrayOf("integer", hospitalizationIds.toArray());
+            try {
+                ps.setArray(1, idArray);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        discharged.add(rs.getInt("hospitalization_id"));
+                        int departmentId = rs.getInt("department_id");
+                        String bed = rs.getString("bed_number");
+                        updateBeds(connection, () -> BEDS.release(departmentId, bed), departmentId);
+                    }
+                }
+            } finally {
+                idArray.free();
+            }
         }
+        return discharged;
     }
 
+    /**
+     * Moves the open hospitalizations of fromDepartmentId into toDepartmentId in one transaction.
+     * bedMapping maps a bed in the old department to the bed the patient gets in the new one;
+     * only patients whose current bed appears in the mapping are moved, so a whole ward or just some beds
+     * can be transferred. Fails without changing anything if a target bed is given twice or is already
+     * occupied in the new department, or if the patients would not fit in its capacity. Between two
+     * departments both are locked like an admission, in department id order so that opposite transfers
+     * cannot deadlock. Within one department patients may swap beds or move into a bed another one
+     * leaves: the open-bed unique index is checked row by row, so the moving stays are first parked on
+     * placeholder beds of their own and only then placed. Returns the ids of the moved hospitalizations.
+     */
+    public List<Integer> transferAll(int fromDepartmentId, int toDepartmentId, Map<String, String> bedMapping,
+                                     Connection connection) throws SQLException {
+        if (bedMapping.isEmpty()) {
+            return List.of();
+        }
+        Set<String> targets = new HashSet<>(bedMapping.values());
+        if (targets.size() != bedMapping.size()) {
+            throw new IllegalArgumentException("The same target bed is given to more than one patient.");
+        }
+        String[] oldBeds = bedMapping.keySet().toArray(new String[0]);
+        String[] newBeds = new String[oldBeds.length];
+        for (int i = 0; i < oldBeds.length; i++) {
+            newBeds[i] = bedMapping.get(oldBeds[i]);
+        }
+
+        // beds that are being vacated by this same transfer (same department) do not count as occupied
+        String occupiedSql = """
+                SELECT bed_number FROM hospitalization
+                WHERE department_id = ? AND discharge_datetime IS NULL AND bed_number = ANY(?)
+                  AND NOT (department_id = ? AND bed_number = ANY(?))
+                FOR UPDATE
+                """;
+        String movingSql = """
+                SELECT count(*) FROM hospitalization
+                WHERE department_id = ? AND discharge_datetime IS NULL AND bed_number = ANY(?)
+                """;
+        String moveSql = """
+                UPDATE hospitalization h
+                SET department_id = ?, bed_number = m.new_bed
+                FROM unnest(?::text[], ?::text[]) AS m(old_bed, new_bed)
+                WHERE h.department_id = ? AND h.discharge_datetime IS NULL AND h.bed_number = m.old_bed
+                RETURNING h.hospitalization_id, m.old_bed, m.new_bed
+                """;
+        // same department: vacate every bed first (a placeholder unique to the stay), then place
+        String parkSql = """
+                UPDATE hospitalization h
+                SET bed_number = 'transfer-' || h.hospitalization_id
+                FROM unnest(?::text[], ?::text[]) AS m(old_bed, new_bed)
+                WHERE h.department_id = ? AND h.discharge_datetime IS NULL AND h.bed_number = m.old_bed
+                RETURNING h.hospitalization_id, m.old_bed, m.new_bed
+                """;
+        String placeSql = """
+                UPDATE hospitalization h
+                SET bed_number = m.new_bed
+                FROM unnest(?::int[], ?::text[]) AS m(hospitalization_id, new_bed)
+                WHERE h.hospitalization_id = m.hospitalization_id
+                """;
+
+        // within one department the number of open stays does not change, so there is no capacity to check
+        boolean crossing = fromDepartmentId != toDepartmentId;
+        int firstId = Math.min(fromDepartmentId, toDepartmentId);
+        int secondId = Math.max(fromDepartmentId, toDepartmentId);
+        boolean ownTransaction = connection.getAutoCommit();
+        if (ownTransaction) {
+            connection.setAutoCommit(false);
+        }
+        DepartmentLocks.Held first = crossing ? ADMISSION_LOCKS.lock(firstId) : null;
+        DepartmentLocks.Held second = crossing ? ADMISSION_LOCKS.lock(secondId) : null;
+        Array oldBedArray = null;
+        Array newBedArray = null;
+        try {
+            oldBedArray = connection.createArrayOf("text", oldBeds);
+            newBedArray = connection.createArrayOf("text", newBeds);
+
+            if (crossing) {
+                Integer firstCapacity = lockDepartment(firstId, connection);
+                Integer secondCapacity = lockDepartment(secondId, connection);
+                int moving;
+                try (PreparedStatement ps = connection.prepareStatement(movingSql)) {
+                    ps.setInt(1, fromDepartmentId);
+                    ps.setArray(2, oldBedArray);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        rs.next();
+                        moving = rs.getInt(1);
+                    }
+                }
+                checkRoom(toDepartmentId, toDepartmentId == firstId ? firstCapacity : secondCapacity, moving, connection);
+            }
+
+            List<String> occupied = new ArrayList<>();
+            try (PreparedStatement ps = connection.prepareStatement(occupiedSql)) {
+                ps.setInt(1, toDepartmentId);
+                ps.setArray(2, newBedArray);
+                ps.setInt(3, fromDepartmentId);
+                ps.setArray(4, oldBedArray);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        occupied.add(rs.getString(1));
+                    }
+                }
+            }
+            if (!occupied.isEmpty()) {
+                throw new IllegalArgumentException("Beds already occupied in department " + toDepartmentId + ": " + occupied);
+            }
+
+            List<Integer> moved = new ArrayList<>();
+            Map<String, String> movedBeds = new HashMap<>();
+            if (crossing) {
+                // the target beds are free in the other department, so one statement cannot collide with itself
+                try (PreparedStatement ps = connection.prepareStatement(moveSql)) {
+                    ps.setInt(1, toDepartmentId);
+                    ps.setArray(2, oldBedArray);
+                    ps.setArray(3, newBedArray);
+                    ps.setInt(4, fromDepartmentId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            moved.add(rs.getInt(1));
+                            movedBeds.put(rs.getString(2), rs.getString(3));
+                        }
+                    }
+                }
+            } else {
+                List<String> placedBeds = new ArrayList<>();
+                try (PreparedStatement ps = connection.prepareStatement(parkSql)) {
+                    ps.setArray(1, oldBedArray);
+                    ps.setArray(2, newBedArray);
+                    ps.setInt(3, fromDepartmentId);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            moved.add(rs.getInt(1));
+                            movedBeds.put(rs.getString(2), rs.getString(3));
+                            placedBeds.add(rs.getString(3));
+                        }
+                    }
+                }
+                placeParked(placeSql, moved, placedBeds, connection);
+            }
+            if (ownTransaction) {
+                connection.commit();
+                // release everything first: within one ward a patient may move into a bed another one just left
+                movedBeds.keySet().forEach(bed -> BEDS.release(fromDepartmentId, bed));
+                movedBeds.values().forEach(bed -> BEDS.claim(toDepartmentId, bed));
+            } else if (!moved.isEmpty()) {
+                BEDS.markStale(fromDepartmentId);
+                BEDS.markStale(toDepartmentId);
+            }
+            return moved;
+        } catch (SQLException | RuntimeException e) {
+            if (ownTransaction) {
+                connection.rollback();
+            }
+            throw e;
+        } finally {
+            if (newBedArray != null) {
+                newBedArray.free();
+            }
+            if (oldBedArray != null) {
+                oldBedArray.free();
+            }
+            if (ownTransaction) {
+                connection.setAutoCommit(true);
+            }
+            if (crossing) {
+                second.close();
+                first.close();
+            }
+        }
+    }
+
+
+    /** Second half of a move within one department: puts every parked stay in its new bed. */
+    private static void placeParked(String placeSql, List<Integer> ids, List<String> beds, Connection connection)
+            throws SQLException {
+        if (ids.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement ps = connection.prepareStatement(placeSql)) {
+            Array idArray = connection.createArrayOf("integer", ids.toArray());
+            Array bedArray = connection.createArrayOf("text", beds.toArray());
+            try {
+                ps.setArray(1, idArray);
+                ps.setArray(2, bedArray);
+                ps.executeUpdate();
+            } finally {
+                bedArray.free();
+                idArray.free();
+            }
+        }
+    }
 
     // ---------- Helper mapper ----------
     private Hospitalization extractHospitalization(ResultSet rs) throws SQLException {
@@ -1,44 +1,75 @@
 package DAOs;
 
+import Database.IdAllocators;
 import Entities.MedicalRecord;
+import Entities.Page;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public class MedicalRecordDAO {
 
-    // ---------- INSERT ----------
-    public MedicalRecord insertMedicalRecord(MedicalRecord mr, Connection connection) throws SQLException {
-        String sql = """
+    private static final String INSERT_SQL = """
             INSERT INTO medical_record
-                (patient_id, doctor_id, diagnosis, treatment, notes)
-            VALUES (?, ?, ?, ?, ?)
+                (patient_id, doctor_id, diagnosis, treatment, notes, record_id)
+            VALUES (?, ?, ?, ?, ?, ?)
             """;
 
-        try (PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setInt(1, mr.getPatientId());
-
-            if (mr.getDoctorId() != null) {
-                ps.setInt(2, mr.getDoctorId());
-            } else {
-                ps.setNull(2, Types.INTEGER);
-            }
-
-            ps.setString(3, mr.getDiagnosis());
-            ps.setString(4, mr.getTreatment());
-            ps.setString(5, mr.getNotes());
+    private static final PatchUpdate PATCH = new PatchUpdate("medical_record", "record_id",
+            Set.of("patient_id", "doctor_id", "record_datetime", "diagnosis", "treatment", "notes"));
 
+    // ---------- INSERT ----------
+    public MedicalRecord insertMedicalRecord(MedicalRecord mr, Connection connection) throws SQLException {
+        int id = IdAllocators.forTable("medical_record", "record_id").next(connection);
+        try (PreparedStatement ps = connection.prepareStatement(INSERT_SQL)) {
+            bindMedicalRecord(ps, mr, id);
             ps.executeUpdate();
+        }
+        mr.setRecordId(id);
+        return mr;
+    }
 
-            try (ResultSet rs = ps.getGeneratedKeys()) {
-                if (rs.next()) {
-                    int id = rs.getInt(1);
-                    mr.setRecordId(id);
-                }
+    /**
+     * Inserts all records with one executeBatch. The ids are reserved up front from the id allocator,
+     * so no generated keys have to come back and the driver can rewrite the batch into multi-row INSERTs.
+     * Runs in the caller's transaction; in auto-commit mode each row commits on its own.
+     */
+    public List<MedicalRecord> insertMedicalRecords(List<MedicalRecord> records, Connection connection) throws SQLException {
+        if (records.isEmpty()) {
+            return records;
+        }
+        int[] ids = IdAllocators.forTable("medical_record", "record_id").next(records.size(), connection);
+        try (PreparedStatement ps = connection.prepareStatement(INSERT_SQL)) {
+            for (int i = 0; i < records.size(); i++) {
+                bindMedicalRecord(ps, records.get(i), ids[i]);
+                ps.addBatch();
             }
+            ps.executeBatch();
         }
-        return mr;
+        for (int i = 0; i < records.size(); i++) {
+            records.get(i).setRecordId(ids[i]);
+        }
+        return records;
+    }
+
+    private static void bindMedicalRecord(PreparedStatement ps, MedicalRecord mr, int id) throws SQLException {
+        ps.setInt(1, mr.getPatientId());
+
+        if (mr.getDoctorId() != null) {
+            ps.setInt(2, mr.getDoctorId());
+        } else {
+            ps.setNull(2, Types.INTEGER);
+        }
+
+        ps.setString(3, mr.getDiagnosis());
+        ps.setString(4, mr.getTreatment());
+        ps.setString(5, mr.getNotes());
+        ps.setInt(6, id);
     }
 
 
@@ -89,14 +120,48 @@ public class MedicalRecordDAO {
         return list;
     }
 
-    public int updateMedicalRecordField(int recordId, String field, Object value, Connection connection) throws SQLException {
-        String sql = "UPDATE medical_record SET " + field + " = ? WHERE record_id = ?";
+    /** Same as findAll but streamed through a cursor, newest first; returns how many records were visited. */
+    public int streamAll(int fetchSize, Consumer<MedicalRecord> action, Connection connection) throws SQLException {
+        String sql = "SELECT * FROM medical_record ORDER BY record_datetime DESC";
+        return CursorReader.forEach(sql, fetchSize, this::extractMedicalRecord, action, connection);
+    }
+
+    public int streamAll(Consumer<MedicalRecord> action, Connection connection) throws SQLException {
+        return streamAll(CursorReader.DEFAULT_FETCH_SIZE, action, connection);
+    }
+
+    // ---------- PAGE (newest first, keyset on record_datetime + record_id) ----------
+    public Page<MedicalRecord> findPage(String afterToken, int limit, Connection connection) throws SQLException {
+        PageToken.checkLimit(limit);
+        String sql = afterToken == null
+                ? "SELECT * FROM medical_record ORDER BY record_datetime DESC, record_id DESC LIMIT ?"
+                : "SELECT * FROM medical_record WHERE (record_datetime, record_id) < (?, ?) " +
+                  "ORDER BY record_datetime DESC, record_id DESC LIMIT ?";
+        List<MedicalRecord> rows = new ArrayList<>();
 
         try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setObject(1, value);
-            ps.setInt(2, recordId);
-            return ps.executeUpdate();
+            int i = 1;
+            if (afterToken != null) {
+                ps.setTimestamp(i++, Timestamp.valueOf(PageToken.timestamp(afterToken)));
+                ps.setInt(i++, PageToken.id(afterToken));
+            }
+            ps.setInt(i, limit + 1);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(extractMedicalRecord(rs));
+                }
+            }
         }
+        return Page.fromOverfetch(rows, limit, mr -> PageToken.of(mr.getRecordDateTime(), mr.getRecordId()));
+    }
+
+    public int updateMedicalRecordFields(int recordId, Map<String, ?> changes, Connection connection) throws SQLException {
+        return PATCH.apply(recordId, changes, connection);
+    }
+
+    public int updateMedicalRecordField(int recordId, String field, Object value, Connection connection) throws SQLException {
+        return updateMedicalRecordFields(recordId, Collections.singletonMap(field, value), connection);
     }
 
     // ---------- DELETE ----------
@@ -0,0 +1,160 @@
+package DAOs;
+
+import Entities.MedicalRecord;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Asynchronous write path for medical records entered in bursts (ward rounds).
+ * submit() puts the record on a bounded queue and returns at once with a future for its record_id;
+ * a single background thread collects up to batchSize records, or whatever arrived within
+ * flushIntervalMillis of the first one, and writes them with one executeBatch and one commit.
+ * When the queue is full submit() blocks until the writer catches up, so a burst can never grow memory
+ * without bound. If a batch fails, its records are retried one by one so a single bad record only fails
+ * its own future. close() stops accepting records, writes out everything already queued, then returns.
+ */
+public class MedicalRecordWriter implements AutoCloseable {
+
+    private record Pending(MedicalRecord record, CompletableFuture<Integer> result) {
+    }
+
+    private final MedicalRecordDAO medicalRecordDAO = new MedicalRecordDAO();
+    private final DataSource dataSource;
+    private final BlockingQueue<Pending> queue;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final Thread writer;
+    // submit() holds the read lock while enqueuing, close() takes the write lock to flip closed,
+    // so no record can slip into the queue after the writer has been told to finish
+    private final ReadWriteLock closing = new ReentrantReadWriteLock();
+    private volatile boolean closed;
+
+    public MedicalRecordWriter(DataSource dataSource, int queueCapacity, int batchSize, long flushIntervalMillis) {
+        if (queueCapacity <= 0 || batchSize <= 0 || flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("Queue capacity, batch size and flush interval must be positive.");
+        }
+        this.dataSource = dataSource;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.writer = new Thread(this::run, "medical-record-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues the record for writing; blocks while the queue is full.
+     * The future completes with the record_id once the record's batch has been committed,
+     * or exceptionally if the record could not be written.
+     */
+    public CompletableFuture<Integer> submit(MedicalRecord mr) throws InterruptedException {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        closing.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Medical record writer is closed.");
+            }
+            queue.put(new Pending(mr, result));
+        } finally {
+            closing.readLock().unlock();
+        }
+        return result;
+    }
+
+    public int queuedRecords() {
+        return queue.size();
+    }
+
+    /** Stops accepting records and waits until every queued record has been written. */
+    @Override
+    public void close() {
+        closing.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            closing.writeLock().unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0 || closed) {
+                        break;
+                    }
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                // only close() may stop the writer, and it does so by setting closed; keep what was collected
+                flush(batch);
+            } catch (RuntimeException e) {
+                batch.forEach(p -> p.result().completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<MedicalRecord> records = new ArrayList<>(batch.size());
+        batch.forEach(p -> records.add(p.record()));
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                medicalRecordDAO.insertMedicalRecords(records, connection);
+                connection.commit();
+                batch.forEach(p -> p.result().complete(p.record().getRecordId()));
+                return;
+            } catch (SQLException e) {
+                connection.rollback();
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            // the batch failed as a whole; write row by row so only the bad records fail
+            for (Pending p : batch) {
+                try {
+                    medicalRecordDAO.insertMedicalRecord(p.record(), connection);
+                    p.result().complete(p.record().getRecordId());
+                } catch (SQLException e) {
+                    p.result().completeExceptionally(e);
+                }
+            }
+        } catch (SQLException e) {
+            batch.forEach(p -> p.result().completeExceptionally(e));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package DAOs;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Encodes the sort key of the last row of a page into an opaque continuation token.
+ * Tokens are either "id" or "timestamp|id", Base64 (URL-safe) encoded.
+ */
+final class PageToken {
+
+    private PageToken() {
+    }
+
+    static String of(int id) {
+        return encode(Integer.toString(id));
+    }
+
+    static String of(LocalDateTime timestamp, int id) {
+        return encode(timestamp + "|" + id);
+    }
+
+    static int id(String token) {
+        String key = decode(token);
+        int bar = key.indexOf('|');
+        try {
+            return Integer.parseInt(bar < 0 ? key : key.substring(bar + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid page token.", e);
+        }
+    }
+
+    static LocalDateTime timestamp(String token) {
+        String key = decode(token);
+        int bar = key.indexOf('|');
+        if (bar < 0) {
+            throw new IllegalArgumentException("Invalid page token.");
+        }
+        try {
+            return LocalDateTime.parse(key.substring(0, bar));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid page token.", e);
+        }
+    }
+
+    static void checkLimit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page size must be positive.");
+        }
+    }
+
+    private static String encode(String key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String token) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid page token.", e);
+        }
+    }
+}
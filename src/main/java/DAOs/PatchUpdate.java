@@ -0,0 +1,61 @@
+package DAOs;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Builds "UPDATE table SET a = ?, b = ? WHERE id = ?" for any subset of a whitelisted set of columns.
+ * Columns are sorted before the SQL is generated, so the same set of columns always yields the same text,
+ * and the statement cache on the pooled connection can reuse the prepared statement.
+ * The SQL cache is bounded by the number of column subsets of the whitelist.
+ */
+final class PatchUpdate {
+
+    private final String table;
+    private final String idColumn;
+    private final Set<String> updatable;
+    private final Map<List<String>, String> sqlByColumns = new ConcurrentHashMap<>();
+
+    PatchUpdate(String table, String idColumn, Set<String> updatable) {
+        this.table = table;
+        this.idColumn = idColumn;
+        this.updatable = Set.copyOf(updatable);
+    }
+
+    /** Applies all changes in a single UPDATE; returns rows affected, 0 if there was nothing to change. */
+    int apply(int id, Map<String, ?> changes, Connection connection) throws SQLException {
+        if (changes.isEmpty()) {
+            return 0;
+        }
+        TreeMap<String, Object> sorted = new TreeMap<>();
+        for (Map.Entry<String, ?> change : changes.entrySet()) {
+            if (!updatable.contains(change.getKey())) {
+                throw new IllegalArgumentException("Column cannot be updated: " + change.getKey());
+            }
+            sorted.put(change.getKey(), change.getValue());
+        }
+
+        String sql = sqlByColumns.computeIfAbsent(List.copyOf(sorted.keySet()), this::buildSql);
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (Object value : sorted.values()) {
+                ps.setObject(index++, value);
+            }
+            ps.setInt(index, id);
+            return ps.executeUpdate();
+        }
+    }
+
+    private String buildSql(List<String> columns) {
+        return columns.stream()
+                .map(column -> column + " = ?")
+                .collect(Collectors.joining(", ", "UPDATE " + table + " SET ", " WHERE " + idColumn + " = ?"));
+    }
+}
@@ -1,12 +1,54 @@
 package DAOs;
 
+import Caches.CacheStats;
+import Caches.LruCache;
+import Database.IdAllocators;
+import Entities.BatchResult;
+import Entities.Page;
 import Entities.Patient;
+import Entities.UpsertResult;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public class PatientDAO {
+
+    // Check-in looks the same patient up several times within minutes, by AMKA and then by id.
+    // Entries expire after the TTL so edits made outside this application are picked up eventually;
+    // edits made through this DAO invalidate immediately.
+    private static final int DEFAULT_CACHE_SIZE = 10_000;
+    private static final long DEFAULT_CACHE_TTL_MILLIS = 10 * 60 * 1000;
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final int DEFAULT_UPSERT_BATCH_SIZE = 5_000;
+    private static final LruCache<Integer, Patient> BY_ID = new LruCache<>(DEFAULT_CACHE_SIZE, DEFAULT_CACHE_TTL_MILLIS);
+    private static final LruCache<String, Patient> BY_AMKA = new LruCache<>(DEFAULT_CACHE_SIZE, DEFAULT_CACHE_TTL_MILLIS);
+
+    private static final PatchUpdate PATCH = new PatchUpdate("patient", "patient_id",
+            Set.of("first_name", "last_name", "date_of_birth", "gender", "phone", "amka"));
+
+    public static void setCacheMaxSize(int maxSize) {
+        BY_ID.setMaxSize(maxSize);
+        BY_AMKA.setMaxSize(maxSize);
+    }
+
+    public static void setCacheTtlMillis(long ttlMillis) {
+        BY_ID.setTtlMillis(ttlMillis);
+        BY_AMKA.setTtlMillis(ttlMillis);
+    }
+
+    public static CacheStats cacheStats() {
+        return BY_ID.stats().plus(BY_AMKA.stats());
+    }
+
     public List<Patient> findAll(Connection connection) throws SQLException {
         List<Patient> list = new ArrayList<>();
 
@@ -25,6 +67,46 @@ public class PatientDAO {
         return list;
     }
 
+    /**
+     * Streams every patient to the action through a server-side cursor, fetching fetchSize rows per round-trip,
+     * so memory stays flat no matter how large the table is. Returns the number of rows visited.
+     */
+    public int streamAll(int fetchSize, Consumer<Patient> action, Connection connection) throws SQLException {
+        String sql = "SELECT * FROM patient ORDER BY patient_id";
+        return CursorReader.forEach(sql, fetchSize, this::extractPatient, action, connection);
+    }
+
+    public int streamAll(Consumer<Patient> action, Connection connection) throws SQLException {
+        return streamAll(CursorReader.DEFAULT_FETCH_SIZE, action, connection);
+    }
+
+    /**
+     * Keyset pagination by patient_id: pass null for the first page, then the previous page's nextToken.
+     * Each page costs one index range scan on the primary key, however deep into the table it is.
+     */
+    public Page<Patient> findPage(String afterToken, int limit, Connection connection) throws SQLException {
+        PageToken.checkLimit(limit);
+        String sql = afterToken == null
+                ? "SELECT * FROM patient ORDER BY patient_id LIMIT ?"
+                : "SELECT * FROM patient WHERE patient_id > ? ORDER BY patient_id LIMIT ?";
+        List<Patient> rows = new ArrayList<>();
+
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            int i = 1;
+            if (afterToken != null) {
+                ps.setInt(i++, PageToken.id(afterToken));
+            }
+            ps.setInt(i, limit + 1);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(extractPatient(rs));
+                }
+            }
+        }
+        return Page.fromOverfetch(rows, limit, p -> PageToken.of(p.getPatientId()));
+    }
+
     public int numberOfPatients(Connection connection) throws SQLException {
         String sql = "Select Count(*) from patient;";
         try(PreparedStatement ps = connection.prepareStatement(sql)) {
@@ -37,40 +119,300 @@ public class PatientDAO {
     }
 
     public Patient insertPatient(Patient p, Connection connection) throws SQLException {
+        String sql = """
+                INSERT INTO patient (first_name, last_name, date_of_birth, gender, phone, amka, patient_id)
+                VALUES (?, ?, ?, ?, ?, ?, ?)
+                """;
+
+        int id = IdAllocators.forTable("patient", "patient_id").next(connection);
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+
+            bindPatient(ps, p);
+            ps.setInt(7, id);
+
+            ps.executeUpdate();
+        }
+        p.setPatientId(id);
+
+        if (connection.getAutoCommit()) {
+            cache(p);
+        }
+        return p;
+    }
+
+    public BatchResult<Patient> insertPatients(List<Patient> patients, Connection connection) throws SQLException {
+        return insertPatients(patients, DEFAULT_BATCH_SIZE, connection);
+    }
+
+    /**
+     * Bulk insert for registry imports. Rows are sent batchSize at a time with addBatch/executeBatch
+     * (the driver's reWriteBatchedInserts turns each batch into multi-row INSERTs) and every inserted
+     * patient gets its generated patient_id back.
+     * A bad row does not abort the import: duplicate AMKAs are skipped by ON CONFLICT and reported,
+     * and if a batch fails for any other reason just that batch is replayed row by row under savepoints
+     * to find and report the offending rows. Each batch is committed on its own when the connection is
+     * in auto-commit mode; otherwise everything stays in the caller's transaction.
+     * Relies on the unique constraint on patient.amka.
+     */
+    public BatchResult<Patient> insertPatients(List<Patient> patients, int batchSize, Connection connection)
+            throws SQLException {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
         String sql = """
                 INSERT INTO patient (first_name, last_name, date_of_birth, gender, phone, amka)
                 VALUES (?, ?, ?, ?, ?, ?)
+                ON CONFLICT (amka) DO NOTHING
                 """;
+        String[] returned = {"patient_id", "amka"};
 
-        try (PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        List<Patient> inserted = new ArrayList<>();
+        List<BatchResult.Failure<Patient>> failures = new ArrayList<>();
 
-            ps.setString(1, p.getFirstName());
-            ps.setString(2, p.getLastName());
-            ps.setDate(3, Date.valueOf(p.getDateOfBirth()));
-            ps.setString(4, p.getGender());
-            ps.setString(5, p.getPhone());
-            ps.setString(6, p.getAmka());
+        // duplicates inside the input would be silently merged by ON CONFLICT, so reject them up front
+        List<Integer> accepted = new ArrayList<>();
+        Set<String> seenAmka = new HashSet<>();
+        for (int i = 0; i < patients.size(); i++) {
+            String amka = patients.get(i).getAmka();
+            if (amka == null || amka.isBlank()) {
+                failures.add(new BatchResult.Failure<>(i, patients.get(i), "AMKA is required."));
+            } else if (!seenAmka.add(amka)) {
+                failures.add(new BatchResult.Failure<>(i, patients.get(i), "Duplicate AMKA in input: " + amka));
+            } else {
+                accepted.add(i);
+            }
+        }
 
-            ps.executeUpdate();
+        boolean ownTransaction = connection.getAutoCommit();
+        if (ownTransaction) {
+            connection.setAutoCommit(false);
+        }
+        try (PreparedStatement ps = connection.prepareStatement(sql, returned)) {
+            for (int from = 0; from < accepted.size(); from += batchSize) {
+                List<Integer> chunk = accepted.subList(from, Math.min(from + batchSize, accepted.size()));
+                Savepoint beforeChunk = connection.setSavepoint();
+                try {
+                    insertChunk(ps, patients, chunk, inserted, failures);
+                    connection.releaseSavepoint(beforeChunk);
+                } catch (BatchUpdateException e) {
+                    connection.rollback(beforeChunk);
+                    insertRowByRow(ps, patients, chunk, inserted, failures, connection);
+                }
+                if (ownTransaction) {
+                    connection.commit();
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            if (ownTransaction) {
+                connection.rollback();
+            }
+            throw e;
+        } finally {
+            if (ownTransaction) {
+                connection.setAutoCommit(true);
+            }
+        }
+
+        failures.sort((a, b) -> Integer.compare(a.index(), b.index()));
+        return new BatchResult<>(inserted, failures);
+    }
 
-            try (ResultSet keys = ps.getGeneratedKeys()) {
-                if (keys.next()) {
-                    p.setPatientId(keys.getInt(1));
+    private void insertChunk(PreparedStatement ps, List<Patient> patients, List<Integer> chunk,
+                             List<Patient> inserted, List<BatchResult.Failure<Patient>> failures)
+            throws SQLException {
+        List<Integer> sent = new ArrayList<>();
+        for (int index : chunk) {
+            try {
+                bindPatient(ps, patients.get(index));
+            } catch (RuntimeException e) {
+                failures.add(new BatchResult.Failure<>(index, patients.get(index), "Invalid data: " + e.getMessage()));
+                continue;
+            }
+            ps.addBatch();
+            sent.add(index);
+        }
+        if (sent.isEmpty()) {
+            return;
+        }
+        ps.executeBatch();
+
+        Map<String, Integer> idsByAmka = new HashMap<>();
+        try (ResultSet keys = ps.getGeneratedKeys()) {
+            while (keys.next()) {
+                idsByAmka.put(keys.getString("amka"), keys.getInt("patient_id"));
+            }
+        }
+        for (int index : sent) {
+            recordOutcome(index, patients.get(index), idsByAmka.get(patients.get(index).getAmka()), inserted, failures);
+        }
+    }
+
+    private void insertRowByRow(PreparedStatement ps, List<Patient> patients, List<Integer> chunk,
+                                List<Patient> inserted, List<BatchResult.Failure<Patient>> failures,
+                                Connection connection) throws SQLException {
+        ps.clearBatch();
+        for (int index : chunk) {
+            Patient p = patients.get(index);
+            Savepoint beforeRow = connection.setSavepoint();
+            try {
+                bindPatient(ps, p);
+                ps.executeUpdate();
+                Integer id = null;
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    if (keys.next()) {
+                        id = keys.getInt("patient_id");
+                    }
                 }
+                connection.releaseSavepoint(beforeRow);
+                recordOutcome(index, p, id, inserted, failures);
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback(beforeRow);
+                failures.add(new BatchResult.Failure<>(index, p, e.getMessage()));
             }
         }
+    }
 
-        return p;
+    private static void recordOutcome(int index, Patient p, Integer id,
+                                      List<Patient> inserted, List<BatchResult.Failure<Patient>> failures) {
+        if (id == null) {
+            failures.add(new BatchResult.Failure<>(index, p, "A patient with AMKA " + p.getAmka() + " already exists."));
+        } else {
+            p.setPatientId(id);
+            inserted.add(p);
+        }
     }
 
-    public int updatePatientField(int patientId, String field, Object value, Connection connection) throws SQLException {
-        String sql = "UPDATE patient SET " + field + " = ? WHERE patient_id = ?";
+    public UpsertResult<Patient> upsertPatientsByAmka(List<Patient> patients, Connection connection) throws SQLException {
+        return upsertPatientsByAmka(patients, DEFAULT_UPSERT_BATCH_SIZE, connection);
+    }
 
+    /**
+     * Registry sync: inserts patients whose AMKA is new and overwrites the demographics of those that exist.
+     * Each batch is a single INSERT ... SELECT FROM unnest(arrays) ON CONFLICT (amka) DO UPDATE, so 100k rows
+     * take a couple of dozen round-trips. Rows whose data already matches are not rewritten; they come back
+     * as unchanged. xmax = 0 in RETURNING tells a freshly inserted row from an updated one.
+     * If the input repeats an AMKA, the last occurrence wins and the earlier ones are reported as failures,
+     * because one statement may not update the same row twice.
+     * Commits after every batch in auto-commit mode; otherwise runs in the caller's transaction.
+     */
+    public UpsertResult<Patient> upsertPatientsByAmka(List<Patient> patients, int batchSize, Connection connection)
+            throws SQLException {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
+        String sql = """
+                INSERT INTO patient AS p (first_name, last_name, date_of_birth, gender, phone, amka)
+                SELECT * FROM unnest(?::text[], ?::text[], ?::date[], ?::text[], ?::text[], ?::text[])
+                ON CONFLICT (amka) DO UPDATE
+                SET first_name = EXCLUDED.first_name,
+                    last_name = EXCLUDED.last_name,
+                    date_of_birth = EXCLUDED.date_of_birth,
+                    gender = EXCLUDED.gender,
+                    phone = EXCLUDED.phone
+                WHERE (p.first_name, p.last_name, p.date_of_birth, p.gender, p.phone)
+                      IS DISTINCT FROM
+                      (EXCLUDED.first_name, EXCLUDED.last_name, EXCLUDED.date_of_birth, EXCLUDED.gender, EXCLUDED.phone)
+                RETURNING p.patient_id, p.amka, (p.xmax = 0) AS inserted
+                """;
+
+        List<BatchResult.Failure<Patient>> failures = new ArrayList<>();
+        Map<String, Integer> lastIndexByAmka = new LinkedHashMap<>();
+        for (int i = 0; i < patients.size(); i++) {
+            String amka = patients.get(i).getAmka();
+            if (amka == null || amka.isBlank()) {
+                failures.add(new BatchResult.Failure<>(i, patients.get(i), "AMKA is required."));
+                continue;
+            }
+            Integer earlier = lastIndexByAmka.put(amka, i);
+            if (earlier != null) {
+                failures.add(new BatchResult.Failure<>(earlier, patients.get(earlier),
+                        "Superseded by a later row with the same AMKA: " + amka));
+            }
+        }
+        List<Integer> accepted = new ArrayList<>(lastIndexByAmka.values());
+
+        int inserted = 0;
+        int updated = 0;
+        boolean ownTransaction = connection.getAutoCommit();
+        if (ownTransaction) {
+            connection.setAutoCommit(false);
+        }
         try (PreparedStatement ps = connection.prepareStatement(sql)) {
-            ps.setObject(1, value);
-            ps.setInt(2, patientId);
-            return ps.executeUpdate();
+            for (int from = 0; from < accepted.size(); from += batchSize) {
+                List<Integer> chunk = accepted.subList(from, Math.min(from + batchSize, accepted.size()));
+                bindColumns(ps, patients, chunk, connection);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        int id = rs.getInt("patient_id");
+                        String amka = rs.getString("amka");
+                        patients.get(lastIndexByAmka.get(amka)).setPatientId(id);
+                        if (rs.getBoolean("inserted")) {
+                            inserted++;
+                        } else {
+                            updated++;
+                            // the AMKA is the conflict key, so it cannot have changed
+                            BY_ID.invalidate(id);
+                            BY_AMKA.invalidate(amka);
+                        }
+                    }
+                }
+                if (ownTransaction) {
+                    connection.commit();
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            if (ownTransaction) {
+                connection.rollback();
+            }
+            throw e;
+        } finally {
+            if (ownTransaction) {
+                connection.setAutoCommit(true);
+            }
+        }
+
+        failures.sort((a, b) -> Integer.compare(a.index(), b.index()));
+        return new UpsertResult<>(inserted, updated, accepted.size() - inserted - updated, failures);
+    }
+
+    private static void bindColumns(PreparedStatement ps, List<Patient> patients, List<Integer> chunk,
+                                    Connection connection) throws SQLException {
+        int n = chunk.size();
+        String[] firstNames = new String[n];
+        String[] lastNames = new String[n];
+        Date[] birthDates = new Date[n];
+        String[] genders = new String[n];
+        String[] phones = new String[n];
+        String[] amkas = new String[n];
+        for (int i = 0; i < n; i++) {
+            Patient p = patients.get(chunk.get(i));
+            firstNames[i] = p.getFirstName();
+            lastNames[i] = p.getLastName();
+            birthDates[i] = p.getDateOfBirth() == null ? null : Date.valueOf(p.getDateOfBirth());
+            genders[i] = p.getGender();
+            phones[i] = p.getPhone();
+            amkas[i] = p.getAmka();
         }
+        ps.setArray(1, connection.createArrayOf("text", firstNames));
+        ps.setArray(2, connection.createArrayOf("text", lastNames));
+        ps.setArray(3, connection.createArrayOf("date", birthDates));
+        ps.setArray(4, connection.createArrayOf("text", genders));
+        ps.setArray(5, connection.createArrayOf("text", phones));
+        ps.setArray(6, connection.createArrayOf("text", amkas));
+    }
+
+    /** Writes every changed column (column name to new value) in one UPDATE. */
+    public int updatePatientFields(int patientId, Map<String, ?> changes, Connection connection) throws SQLException {
+        try {
+            return PATCH.apply(patientId, changes, connection);
+        } finally {
+            invalidate(patientId);
+        }
+    }
+
+    public int updatePatientField(int patientId, String field, Object value, Connection connection) throws SQLException {
+        return updatePatientFields(patientId, Collections.singletonMap(field, value), connection);
     }
 
 
@@ -79,10 +421,16 @@ public class PatientDAO {
         try (PreparedStatement ps = connection.prepareStatement(sql)) {
             ps.setInt(1, patientId);
             return ps.executeUpdate();
+        } finally {
+            invalidate(patientId);
         }
     }
 
     public Patient findByID(int patientId, Connection connection) throws SQLException {
+        Patient cached = BY_ID.get(patientId);
+        if (cached != null) {
+            return copy(cached);
+        }
         String sql = "SELECT * FROM patient WHERE patient_id = ?";
 
         try (PreparedStatement ps = connection.prepareStatement(sql)) {
@@ -90,7 +438,9 @@ public class PatientDAO {
 
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
-                    return extractPatient(rs);
+                    Patient p = extractPatient(rs);
+                    cache(p);
+                    return p;
                 }
             }
         }
@@ -98,7 +448,49 @@ public class PatientDAO {
         return null;
     }
 
+    /**
+     * Fetches many patients in one round-trip (patient_id = ANY(array)) instead of one findByID per row.
+     * Ids that do not exist are simply missing from the returned map.
+     */
+    public Map<Integer, Patient> findByIds(Collection<Integer> ids, Connection connection) throws SQLException {
+        Map<Integer, Patient> result = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : ids) {
+            Patient cached = BY_ID.get(id);
+            if (cached != null) {
+                result.put(id, copy(cached));
+            } else {
+                missing.add(id);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+        String sql = "SELECT * FROM patient WHERE patient_id = ANY(?)";
+
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            Array idArray = connection.createArrayOf("integer", missing.toArray());
+            try {
+                ps.setArray(1, idArray);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Patient row = extractPatient(rs);
+                        result.put(row.getPatientId(), row);
+                        cache(row);
+                    }
+                }
+            } finally {
+                idArray.free();
+            }
+        }
+        return result;
+    }
+
     public Patient findByAMKA(String amka, Connection connection) throws SQLException {
+        Patient cached = BY_AMKA.get(amka);
+        if (cached != null) {
+            return copy(cached);
+        }
         String sql = "SELECT * FROM patient WHERE amka = ?";
 
         try (PreparedStatement ps = connection.prepareStatement(sql)) {
@@ -106,13 +498,54 @@ public class PatientDAO {
 
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
-                    return extractPatient(rs);
+                    Patient p = extractPatient(rs);
+                    cache(p);
+                    return p;
                 }
             }
         }
         return null;
     }
 
+    private static void bindPatient(PreparedStatement ps, Patient p) throws SQLException {
+        ps.setString(1, p.getFirstName());
+        ps.setString(2, p.getLastName());
+        if (p.getDateOfBirth() != null) {
+            ps.setDate(3, Date.valueOf(p.getDateOfBirth()));
+        } else {
+            ps.setNull(3, Types.DATE);
+        }
+        ps.setString(4, p.getGender());
+        ps.setString(5, p.getPhone());
+        ps.setString(6, p.getAmka());
+    }
+
+    private static void cache(Patient p) {
+        Patient c = copy(p);
+        BY_ID.put(c.getPatientId(), c);
+        if (c.getAmka() != null) {
+            BY_AMKA.put(c.getAmka(), c);
+        }
+    }
+
+    // the AMKA itself may be the field that changed, so drop the AMKA entry by patient id
+    private static void invalidate(int patientId) {
+        BY_ID.invalidate(patientId);
+        BY_AMKA.invalidateIf(p -> p.getPatientId() == patientId);
+    }
+
+    private static Patient copy(Patient p) {
+        Patient c = new Patient();
+        c.setPatientId(p.getPatientId());
+        c.setFirstName(p.getFirstName());
+        c.setLastName(p.getLastName());
+        c.setDateOfBirth(p.getDateOfBirth());
+        c.setGender(p.getGender());
+        c.setPhone(p.getPhone());
+        c.setAmka(p.getAmka());
+        return c;
+    }
+
     private Patient extractPatient(ResultSet rs) throws SQLException {
         Patient p = new Patient();
         p.setPatientId(rs.getInt("patient_id"));
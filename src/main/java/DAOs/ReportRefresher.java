@@ -0,0 +1,46 @@
+package DAOs;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+
+/**
+ * Rebuilds the report summaries on request and remembers how the last attempt went.
+ * Triggers keep the summaries current, including corrected dates of birth, so a rebuild is only needed
+ * after the triggers were bypassed (disabled for a restore, say). It holds back every write to
+ * hospitalization, medical_record and patient while it runs, which is why nothing schedules it.
+ */
+public final class ReportRefresher {
+
+    private final ReportSummaryDAO reportSummaryDAO = new ReportSummaryDAO();
+    private final DataSource dataSource;
+    private volatile LocalDateTime lastRebuild;
+    private volatile String lastError;
+
+    public ReportRefresher(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /** Rebuilds now on the caller's thread; one rebuild at a time. */
+    public synchronized void rebuildNow() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            reportSummaryDAO.rebuild(connection);
+        } catch (SQLException | RuntimeException e) {
+            lastError = e.getMessage();
+            throw e;
+        }
+        lastRebuild = LocalDateTime.now();
+        lastError = null;
+    }
+
+    /** When the last rebuild from this process finished, or null if none has. */
+    public LocalDateTime lastRebuild() {
+        return lastRebuild;
+    }
+
+    /** Why the most recent rebuild failed, or null if it succeeded. */
+    public String lastError() {
+        return lastError;
+    }
+}
@@ -0,0 +1,213 @@
+package DAOs;
+
+import Entities.Doctor;
+import Entities.ReportSnapshot;
+
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+/**
+ * The ReportsAnalyticsDAO reports, read from the summary tables of sql/report_summaries.sql instead of
+ * being re-aggregated from hospitalization, medical_record and patient on every call. Each read touches
+ * one summary row per department or doctor (a primary-key lookup for the single-figure reports);
+ * admissions per year are summed from the per-day rollup of sql/admission_rollup.sql.
+ * Triggers keep the summaries current; rebuild() recomputes them and is only run on request.
+ */
+public class ReportSummaryDAO {
+
+    private static final String AVERAGE_LENGTH_OF_STAY_SQL = """
+            SELECT d.name AS department_name, r.total_stay_days / r.discharged_stays AS avg_stay_days, r.as_of
+            FROM report_department r
+            JOIN department d ON d.department_id = r.department_id
+            WHERE r.discharged_stays > 0
+            """;
+
+    private static final String DOCTOR_PATIENT_COUNTS_SQL = """
+            SELECT d.doctor_id, d.first_name, d.last_name, d.specialty, d.phone, d.department_id,
+                   r.patient_count, r.as_of
+            FROM report_doctor r
+            JOIN doctor d ON d.doctor_id = r.doctor_id
+            WHERE r.patient_count > 0
+            ORDER BY r.patient_count DESC
+            """;
+
+    // single figures are kept in parts so writers do not queue on one row; no parts yet reads as 0
+    private static final String TOTAL_SQL = "SELECT SUM(value) AS value, MAX(as_of) AS as_of FROM report_total_part WHERE name = ?";
+
+    private static final String BED_OCCUPANCY_SQL = """
+            SELECT d.name AS department_name, d.capacity,
+                   COALESCE(r.current_patients, 0) AS current_patients, r.as_of
+            FROM department d
+            LEFT JOIN report_department r ON r.department_id = d.department_id
+            """;
+
+    // the per-day rollup of sql/admission_rollup.sql, kept in the writing transaction, so always current
+    private static final String ADMISSIONS_PER_YEAR_SQL = """
+            SELECT d.name AS department_name, SUM(r.admissions) AS admissions, LOCALTIMESTAMP AS as_of
+            FROM admission_rollup_day r
+            JOIN department d ON d.department_id = r.department_id
+            WHERE r.day >= make_date(?, 1, 1) AND r.day < make_date(? + 1, 1, 1)
+            GROUP BY date_trunc('year', r.day::timestamp), d.name
+            HAVING SUM(r.admissions) > 0
+            """;
+
+    /** Average length of stay per department in days, rounded like the live report. */
+    public ReportSnapshot<HashMap<String, Integer>> averageLengthOfStayPerDepartment(Connection connection) throws SQLException {
+        HashMap<String, Integer> result = new HashMap<>();
+        LocalDateTime asOf = null;
+
+        try (PreparedStatement ps = connection.prepareStatement(AVERAGE_LENGTH_OF_STAY_SQL);
+             ResultSet rs = ps.executeQuery()) {
+
+            while (rs.next()) {
+                result.put(rs.getString("department_name"), (int) Math.round(rs.getDouble("avg_stay_days")));
+                asOf = newer(asOf, rs);
+            }
+        }
+        return new ReportSnapshot<>(result, asOf);
+    }
+
+    /** Doctors and number of distinct patients they have examined, most patients first. */
+    public ReportSnapshot<HashMap<Doctor, Integer>> doctorPatientCounts(Connection connection) throws SQLException {
+        HashMap<Doctor, Integer> result = new LinkedHashMap<>();
+        LocalDateTime asOf = null;
+
+        try (PreparedStatement ps = connection.prepareStatement(DOCTOR_PATIENT_COUNTS_SQL);
+             ResultSet rs = ps.executeQuery()) {
+
+            while (rs.next()) {
+                Doctor doctor = new Doctor();
+                doctor.setDoctorId(rs.getInt("doctor_id"));
+                doctor.setFirstName(rs.getString("first_name"));
+                doctor.setLastName(rs.getString("last_name"));
+                doctor.setSpecialty(rs.getString("specialty"));
+                doctor.setPhone(rs.getString("phone"));
+
+                int deptId = rs.getInt("department_id");
+                if (rs.wasNull()) {
+                    doctor.setDepartmentId(null);
+                } else {
+                    doctor.setDepartmentId(deptId);
+                }
+
+                result.put(doctor, rs.getInt("patient_count"));
+                asOf = newer(asOf, rs);
+            }
+        }
+        return new ReportSnapshot<>(result, asOf);
+    }
+
+    public ReportSnapshot<Integer> countCovidCases(Connection connection) throws SQLException {
+        ReportSnapshot<Double> total = total("covid_cases", connection);
+        return new ReportSnapshot<>((int) Math.round(total.data()), total.asOf());
+    }
+
+    /** Bed occupancy rate per department, between 0.0 and 1.0. */
+    public ReportSnapshot<HashMap<String, Double>> bedOccupancyRatePerDepartment(Connection connection) throws SQLException {
+        HashMap<String, Double> result = new HashMap<>();
+        LocalDateTime asOf = null;
+
+        try (PreparedStatement ps = connection.prepareStatement(BED_OCCUPANCY_SQL);
+             ResultSet rs = ps.executeQuery()) {
+
+            while (rs.next()) {
+                int capacity = rs.getInt("capacity");
+                boolean capacityWasNull = rs.wasNull();
+                int currentPatients = rs.getInt("current_patients");
+
+                double rate = capacityWasNull || capacity <= 0 ? 0.0 : (double) currentPatients / capacity;
+                result.put(rs.getString("department_name"), rate);
+                asOf = newer(asOf, rs);
+            }
+        }
+        return new ReportSnapshot<>(result, asOf);
+    }
+
+    /**
+     * Average age of patients who have been admitted, from the count and the sum of their birth dates.
+     * This is the mean exact age, so it can differ by a fraction of a year from the live report, which
+     * averages completed years.
+     */
+    public ReportSnapshot<Double> averageAgeOfAdmittedPatients(Connection connection) throws SQLException {
+        ReportSnapshot<Double> patients = total("admitted_patients", connection);
+        ReportSnapshot<Double> birthDays = total("admitted_birth_days", connection);
+        if (patients.data() <= 0) {
+            return new ReportSnapshot<>(0.0, patients.asOf());
+        }
+        double averageBirthDay = birthDays.data() / patients.data();
+        double averageAge = (LocalDate.now().toEpochDay() - averageBirthDay) / 365.2425;
+        return new ReportSnapshot<>(averageAge, newer(patients.asOf(), birthDays.asOf()));
+    }
+
+    /** Admissions per department in the given year, from the admissions rollup; as of the time of reading. */
+    public ReportSnapshot<HashMap<String, Integer>> admissionsPerDepartmentPerYear(int year, Connection connection) throws SQLException {
+        HashMap<String, Integer> result = new HashMap<>();
+        LocalDateTime asOf = null;
+
+        try (PreparedStatement ps = connection.prepareStatement(ADMISSIONS_PER_YEAR_SQL)) {
+            ps.setInt(1, year);
+            ps.setInt(2, year);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    result.put(rs.getString("department_name"), rs.getInt("admissions"));
+                    asOf = newer(asOf, rs);
+                }
+            }
+        }
+        return new ReportSnapshot<>(result, asOf);
+    }
+
+    /**
+     * Recomputes every summary from the source tables in one transaction. Writers to hospitalization,
+     * medical_record and patient wait while it runs; readers keep seeing the previous figures until it commits.
+     */
+    public void rebuild(Connection connection) throws SQLException {
+        boolean ownTransaction = connection.getAutoCommit();
+        if (ownTransaction) {
+            connection.setAutoCommit(false);
+        }
+        try (PreparedStatement ps = connection.prepareStatement("SELECT report_rebuild()")) {
+            ps.execute();
+            if (ownTransaction) {
+                connection.commit();
+            }
+        } catch (SQLException e) {
+            if (ownTransaction) {
+                connection.rollback();
+            }
+            throw e;
+        } finally {
+            if (ownTransaction) {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private ReportSnapshot<Double> total(String name, Connection connection) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(TOTAL_SQL)) {
+            ps.setString(1, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return new ReportSnapshot<>(rs.getDouble("value"), newer(null, rs));
+                }
+            }
+        }
+        return new ReportSnapshot<>(0.0, null);
+    }
+
+    private static LocalDateTime newer(LocalDateTime current, ResultSet rs) throws SQLException {
+        Timestamp ts = rs.getTimestamp("as_of");
+        return newer(current, ts == null ? null : ts.toLocalDateTime());
+    }
+
+    private static LocalDateTime newer(LocalDateTime a, LocalDateTime b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null || a.isAfter(b) ? a : b;
+    }
+}
@@ -1,5 +1,6 @@
 package DAOs;
 
+import Entities.Department;
 import Entities.Doctor;
 
 import java.sql.*;
@@ -7,20 +8,70 @@ import java.util.HashMap;
 
 public class ReportsAnalyticsDAO {
 
+    // Report queries are public so other readers of the same data (e.g. the CSV exporter) stay in sync.
+    public static final String AVERAGE_LENGTH_OF_STAY_SQL = """
+            SELECT d.name AS department_name, AVG(EXTRACT(EPOCH FROM (h.discharge_datetime - h.admit_datetime)) / 86400.0)
+                       AS avg_stay_days
+            FROM hospitalization h
+            JOIN department d ON d.department_id = h.department_id
+            WHERE h.discharge_datetime IS NOT NULL
+            GROUP BY d.name
+            """;
+
+    public static final String DOCTOR_PATIENT_COUNTS_SQL = """
+            SELECT d.doctor_id, d.first_name, d.last_name, d.specialty, d.phone, d.department_id,
+                   COUNT(DISTINCT mr.patient_id) AS patient_count
+            FROM doctor d
+            JOIN medical_record mr ON mr.doctor_id = d.doctor_id
+            GROUP BY d.doctor_id, d.first_name, d.last_name,
+                     d.specialty, d.phone, d.department_id
+            ORDER BY patient_count DESC
+            """;
+
+    public static final String COVID_CASES_SQL = """
+            SELECT COUNT(*)
+            FROM medical_record
+            WHERE LOWER(diagnosis) LIKE '%covid%'
+            """;
+
+    public static final String BED_OCCUPANCY_SQL = """
+            SELECT d.name AS department_name, d.capacity,
+                   COUNT(h.hospitalization_id) AS current_patients
+            FROM department d
+            LEFT JOIN hospitalization h
+              ON h.department_id = d.department_id
+             AND h.discharge_datetime IS NULL
+            GROUP BY d.name, d.capacity
+            """;
+
+    public static final String AVERAGE_AGE_OF_ADMITTED_SQL = """
+            SELECT AVG(EXTRACT(YEAR FROM age(NOW(), p.date_of_birth))) AS avg_age
+            FROM patient p
+            WHERE EXISTS (
+                SELECT 1
+                FROM hospitalization h
+                WHERE h.patient_id = p.patient_id
+            )
+            """;
+
+    public static final String ADMISSIONS_PER_YEAR_SQL = """
+            SELECT d.name AS department_name,
+                   COUNT(*) AS admissions
+            FROM hospitalization h
+            JOIN department d ON d.department_id = h.department_id
+            WHERE h.admit_datetime >= make_timestamp(?, 1, 1, 0, 0, 0)
+              AND h.admit_datetime < make_timestamp(? + 1, 1, 1, 0, 0, 0)
+            GROUP BY d.name
+            ORDER BY d.name
+            """;
+
     /**
      * Average length of stay  per department in days.
      * EPOCH converts the date difference to seconds and the division with 86400 makes the seconds into days
      * Returns HashMap<String, Integer>.
      */
     public HashMap<String, Integer> averageLengthOfStayPerDepartment(Connection connection) throws SQLException {
-        String sql = """
-                SELECT d.name AS department_name, AVG(EXTRACT(EPOCH FROM (h.discharge_datetime - h.admit_datetime)) / 86400.0)
-                           AS avg_stay_days
-                FROM hospitalization h
-                JOIN department d ON d.department_id = h.department_id
-                WHERE h.discharge_datetime IS NOT NULL
-                GROUP BY d.name
-                """;
+        String sql = AVERAGE_LENGTH_OF_STAY_SQL;
 
         HashMap<String, Integer> result = new HashMap<>();
 
@@ -43,15 +94,7 @@ public class ReportsAnalyticsDAO {
      * Returns HashMap<Entities.Doctor, Integer>.
      */
     public HashMap<Doctor, Integer> doctorPatientCounts(Connection connection) throws SQLException {
-        String sql = """
-                SELECT d.doctor_id, d.first_name, d.last_name, d.specialty, d.phone, d.department_id,
-                       COUNT(DISTINCT mr.patient_id) AS patient_count
-                FROM doctor d
-                JOIN medical_record mr ON mr.doctor_id = d.doctor_id
-                GROUP BY d.doctor_id, d.first_name, d.last_name,
-                         d.specialty, d.phone, d.department_id
-                ORDER BY patient_count DESC
-                """;
+        String sql = DOCTOR_PATIENT_COUNTS_SQL;
 
         HashMap<Doctor, Integer> result = new HashMap<>();
 
@@ -85,11 +128,7 @@ public class ReportsAnalyticsDAO {
      * LIKE returns any diagnosis that contains the word covid
      */
     public int countCovidCases(Connection connection) throws SQLException {
-        String sql = """
-                SELECT COUNT(*)
-                FROM medical_record
-                WHERE LOWER(diagnosis) LIKE '%covid% OR %COVID19%'
-                """;
+        String sql = COVID_CASES_SQL;
 
         try (PreparedStatement ps = connection.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
@@ -104,20 +143,29 @@ public class ReportsAnalyticsDAO {
     /**
      * Bed occupancy rate per department, based on current hospitalizations
      * Returns HashMap<String, Double> with rate between 0.0 and 1.0.
+     * While the occupancy tracker is live only the departments are read; the open stays are not counted.
      */
     public HashMap<String, Double> bedOccupancyRatePerDepartment(Connection connection) throws SQLException {
-        String sql = """
-                SELECT d.name AS department_name, d.capacity,
-                       COUNT(h.hospitalization_id) AS current_patients
-                FROM department d
-                LEFT JOIN hospitalization h
-                  ON h.department_id = d.department_id
-                 AND h.discharge_datetime IS NULL
-                GROUP BY d.name, d.capacity
-                """;
+        String sql = BED_OCCUPANCY_SQL;
 
         HashMap<String, Double> result = new HashMap<>();
 
+        // each department's live figure is read once; one that is not live sends the whole report to SQL
+        boolean live = true;
+        for (Department d : new DepartmentDAO().findAll(connection)) {
+            int currentPatients = HospitalizationDAO.liveOccupancy(d.getDepartmentId());
+            if (currentPatients < 0) {
+                live = false;
+                break;
+            }
+            Integer capacity = d.getCapacity();
+            result.put(d.getName(), capacity == null || capacity <= 0 ? 0.0 : (double) currentPatients / capacity);
+        }
+        if (live) {
+            return result;
+        }
+        result.clear();
+
         try (PreparedStatement ps = connection.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
 
@@ -144,15 +192,7 @@ public class ReportsAnalyticsDAO {
      * Average age of patients who have been admitted
      */
     public double averageAgeOfAdmittedPatients(Connection connection) throws SQLException {
-        String sql = """
-                SELECT AVG(EXTRACT(YEAR FROM age(NOW(), p.date_of_birth))) AS avg_age
-                FROM patient p
-                WHERE EXISTS (
-                    SELECT 1
-                    FROM hospitalization h
-                    WHERE h.patient_id = p.patient_id
-                )
-                """;
+        String sql = AVERAGE_AGE_OF_ADMITTED_SQL;
 
         try (PreparedStatement ps = connection.prepareStatement(sql);
              ResultSet rs = ps.executeQuery()) {
@@ -167,22 +207,17 @@ public class ReportsAnalyticsDAO {
     /**
      * Admissions per year for each department.
      * For a given year, returns HashMap<DepartmentName, Integer>.
+     * The year is a range on admit_datetime rather than EXTRACT(YEAR ...), so the index can be used;
+     * AdmissionRollupDAO answers any other range or granularity.
      */
     public HashMap<String, Integer> admissionsPerDepartmentPerYear(int year, Connection connection) throws SQLException {
-        String sql = """
-                SELECT d.name AS department_name,
-                       COUNT(*) AS admissions
-                FROM hospitalization h
-                JOIN department d ON d.department_id = h.department_id
-                WHERE EXTRACT(YEAR FROM h.admit_datetime) = ?
-                GROUP BY d.name
-                ORDER BY d.name
-                """;
+        String sql = ADMISSIONS_PER_YEAR_SQL;
 
         HashMap<String, Integer> result = new HashMap<>();
 
         try (PreparedStatement ps = connection.prepareStatement(sql)) {
             ps.setInt(1, year);
+            ps.setInt(2, year);
 
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
@@ -0,0 +1,341 @@
+package Database;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Small fixed-bounds JDBC connection pool.
+ * Borrowed connections are proxies: calling close() hands the physical connection back to the pool
+ * instead of closing it, so DAO code can keep using try-with-resources exactly as before.
+ * Each physical connection also carries a {@link StatementCache}, so prepareStatement(sql) on a
+ * borrowed connection reuses the statement left behind by the previous borrower.
+ */
+public class ConnectionPool implements DataSource, AutoCloseable {
+
+    /** A connection returned less than this long ago is not re-validated on borrow. */
+    private static final long VALIDATION_BYPASS_MILLIS = 500;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final long borrowTimeoutMillis;
+    private final int statementCacheSize;
+
+    // Most recently returned connections sit at the head, so cold ones drift to the tail and get evicted.
+    private final LinkedBlockingDeque<PhysicalConnection> idle = new LinkedBlockingDeque<>();
+    private final Semaphore permits;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final LongAdder statementHits = new LongAdder();
+    private final LongAdder statementMisses = new LongAdder();
+    private final LongAdder statementEvictions = new LongAdder();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    public ConnectionPool(String url, String user, String password,
+                          int minSize, int maxSize,
+                          long idleTimeoutMillis, long borrowTimeoutMillis,
+                          int statementCacheSize) {
+        if (minSize < 0 || maxSize <= 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Pool sizes must satisfy 0 <= min <= max and max > 0.");
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, idleTimeoutMillis / 2);
+        housekeeper.scheduleWithFixedDelay(this::housekeep, 0, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection, waiting at most the borrow timeout for one to become free.
+     * Idle connections are validated before being handed out; broken ones are discarded and replaced.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed.");
+        }
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("Timed out after " + borrowTimeoutMillis
+                        + " ms waiting for a pooled connection (max " + maxSize + ").");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a pooled connection.", e);
+        }
+
+        try {
+            PhysicalConnection pc;
+            while ((pc = idle.pollFirst()) != null) {
+                if (isUsable(pc)) {
+                    return lease(pc);
+                }
+                discard(pc);
+            }
+            return lease(open());
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Pool credentials are fixed at construction.");
+    }
+
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    public int getIdleConnections() {
+        return idle.size();
+    }
+
+    public int getActiveConnections() {
+        return maxSize - permits.availablePermits();
+    }
+
+    /** Statement cache counters summed over all connections this pool has opened. */
+    public StatementCache.Stats getStatementCacheStats() {
+        return new StatementCache.Stats(statementHits.sum(), statementMisses.sum(), statementEvictions.sum());
+    }
+
+    /** Closes every idle connection; connections still borrowed are closed when they are returned. */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PhysicalConnection pc;
+        while ((pc = idle.pollFirst()) != null) {
+            discard(pc);
+        }
+    }
+
+    private PhysicalConnection open() throws SQLException {
+        Connection raw = DriverManager.getConnection(url, user, password);
+        totalConnections.incrementAndGet();
+        return new PhysicalConnection(raw, new StatementCache(raw, statementCacheSize,
+                statementHits, statementMisses, statementEvictions));
+    }
+
+    private boolean isUsable(PhysicalConnection pc) {
+        if (System.currentTimeMillis() - pc.lastReturned < VALIDATION_BYPASS_MILLIS) {
+            return true;
+        }
+        try {
+            return pc.raw.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void discard(PhysicalConnection pc) {
+        totalConnections.decrementAndGet();
+        try {
+            pc.raw.close();
+        } catch (SQLException ignored) {
+            // already broken, nothing left to release
+        }
+    }
+
+    private void giveBack(PhysicalConnection pc) {
+        try {
+            pc.statements.releaseAll();
+            boolean reusable = !closed && !pc.raw.isClosed();
+            if (reusable && !pc.raw.getAutoCommit()) {
+                // never hand the next borrower someone else's open transaction
+                pc.raw.rollback();
+                pc.raw.setAutoCommit(true);
+            }
+            if (reusable) {
+                pc.lastReturned = System.currentTimeMillis();
+                idle.offerFirst(pc);
+            } else {
+                discard(pc);
+            }
+        } catch (SQLException e) {
+            discard(pc);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /** Evicts connections idle past the timeout (never below minSize) and tops the pool back up to minSize. */
+    private void housekeep() {
+        if (closed) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        Iterator<PhysicalConnection> it = idle.descendingIterator();
+        while (it.hasNext() && totalConnections.get() > minSize) {
+            PhysicalConnection pc = it.next();
+            if (pc.lastReturned < cutoff && idle.removeLastOccurrence(pc)) {
+                discard(pc);
+            }
+        }
+        try {
+            while (totalConnections.get() < minSize && !closed) {
+                PhysicalConnection pc = open();
+                pc.lastReturned = System.currentTimeMillis();
+                idle.offerLast(pc);
+            }
+        } catch (SQLException e) {
+            System.out.println("Connection pool could not pre-open connections: " + e.getMessage());
+        }
+    }
+
+    private Connection lease(PhysicalConnection pc) {
+        return (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new LeaseHandler(pc));
+    }
+
+    // ===== Helpers =====
+    private static final class PhysicalConnection {
+        private final Connection raw;
+        private final StatementCache statements;
+        private volatile long lastReturned;
+
+        private PhysicalConnection(Connection raw, StatementCache statements) {
+            this.raw = raw;
+            this.statements = statements;
+        }
+    }
+
+    /** Forwards every call to the physical connection until the borrower closes its lease. */
+    private final class LeaseHandler implements InvocationHandler {
+        private final PhysicalConnection pc;
+        private boolean returned;
+
+        private LeaseHandler(PhysicalConnection pc) {
+            this.pc = pc;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!returned) {
+                        returned = true;
+                        giveBack(pc);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return returned || pc.raw.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Pooled[" + pc.raw + "]";
+                }
+                default -> {
+                    if (returned) {
+                        throw new SQLException("Connection has already been returned to the pool.");
+                    }
+                }
+            }
+            if (method.getName().equals("prepareStatement")) {
+                PreparedStatement cached = prepareCached(proxy, args);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+            try {
+                return method.invoke(pc.raw, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        /** Only prepareStatement(sql) and prepareStatement(sql, autoGeneratedKeys) are cached. */
+        private PreparedStatement prepareCached(Object proxy, Object[] args) throws SQLException {
+            if (args.length == 1) {
+                return pc.statements.prepare((String) args[0], Statement.NO_GENERATED_KEYS, (Connection) proxy);
+            }
+            if (args.length == 2 && args[1] instanceof Integer autoGeneratedKeys) {
+                return pc.statements.prepare((String) args[0], autoGeneratedKeys, (Connection) proxy);
+            }
+            return null;
+        }
+    }
+
+    // ===== DataSource boilerplate =====
+    @Override
+    public PrintWriter getLogWriter() {
+        return null;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return 0;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+}
@@ -0,0 +1,23 @@
+package Database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Hands out primary keys for one table ahead of the INSERT, so inserts can bind their own id instead of
+ * asking for generated keys back. The connection is only used when the allocator has to go to the database
+ * for more ids; implementations must be safe to call from several threads at once.
+ */
+public interface IdAllocator {
+
+    int next(Connection connection) throws SQLException;
+
+    /** Reserves count ids at once, for batched inserts. The ids are unique but not necessarily contiguous. */
+    default int[] next(int count, Connection connection) throws SQLException {
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = next(connection);
+        }
+        return ids;
+    }
+}
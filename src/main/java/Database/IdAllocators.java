@@ -0,0 +1,27 @@
+package Database;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Which IdAllocator each table's DAO uses. By default every table gets a SequenceBlockAllocator
+ * of DEFAULT_BLOCK_SIZE; register a different allocator (or a different block size) before the first insert.
+ */
+public final class IdAllocators {
+
+    public static final int DEFAULT_BLOCK_SIZE = 50;
+
+    private static final Map<String, IdAllocator> BY_TABLE = new ConcurrentHashMap<>();
+
+    private IdAllocators() {
+    }
+
+    public static void register(String table, IdAllocator allocator) {
+        BY_TABLE.put(table, allocator);
+    }
+
+    public static IdAllocator forTable(String table, String idColumn) {
+        return BY_TABLE.computeIfAbsent(table,
+                t -> new SequenceBlockAllocator(t, idColumn, DEFAULT_BLOCK_SIZE));
+    }
+}
@@ -0,0 +1,124 @@
+package Database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hi/lo style allocator over the sequence behind a serial column.
+ * A block of blockSize values is drawn from the sequence with one query
+ * (SELECT nextval(seq) FROM generate_series(1, n)) and then handed out from memory; taking an id from the
+ * current block is a single atomic increment, and only the thread that finds the block used up takes the
+ * lock to fetch the next one.
+ * Because the ids come from the column's own sequence, rows inserted elsewhere with the DEFAULT can never
+ * collide with them. Ids from a block that is never used (rollback, restart) are simply skipped, exactly as
+ * nextval would skip them. The column must be serial or GENERATED BY DEFAULT, not GENERATED ALWAYS.
+ */
+public class SequenceBlockAllocator implements IdAllocator {
+
+    private static final String RESERVE_SQL = "SELECT nextval(?::regclass) FROM generate_series(1, ?)";
+
+    private final String table;
+    private final String idColumn;
+    private final int blockSize;
+    private volatile String sequence;
+    private volatile Block current = new Block(new int[0]);
+
+    public SequenceBlockAllocator(String table, String idColumn, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive.");
+        }
+        this.table = table;
+        this.idColumn = idColumn;
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public int next(Connection connection) throws SQLException {
+        while (true) {
+            Block block = current;
+            int id = block.take();
+            if (id != Block.EXHAUSTED) {
+                return id;
+            }
+            refill(block, connection);
+        }
+    }
+
+    /** Drains what is left of the current block first, then fetches the shortfall in one query. */
+    @Override
+    public int[] next(int count, Connection connection) throws SQLException {
+        int[] ids = new int[count];
+        int n = 0;
+        Block block = current;
+        while (n < count) {
+            int id = block.take();
+            if (id == Block.EXHAUSTED) {
+                break;
+            }
+            ids[n++] = id;
+        }
+        if (n < count) {
+            int[] more = reserve(count - n, connection);
+            System.arraycopy(more, 0, ids, n, more.length);
+        }
+        return ids;
+    }
+
+    private synchronized void refill(Block exhausted, Connection connection) throws SQLException {
+        if (current == exhausted) {
+            current = new Block(reserve(blockSize, connection));
+        }
+    }
+
+    private int[] reserve(int count, Connection connection) throws SQLException {
+        int[] ids = new int[count];
+        try (PreparedStatement ps = connection.prepareStatement(RESERVE_SQL)) {
+            ps.setString(1, sequence(connection));
+            ps.setInt(2, count);
+            try (ResultSet rs = ps.executeQuery()) {
+                for (int i = 0; i < count && rs.next(); i++) {
+                    ids[i] = Math.toIntExact(rs.getLong(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    private String sequence(Connection connection) throws SQLException {
+        String seq = sequence;
+        if (seq != null) {
+            return seq;
+        }
+        try (PreparedStatement ps = connection.prepareStatement("SELECT pg_get_serial_sequence(?, ?)")) {
+            ps.setString(1, table);
+            ps.setString(2, idColumn);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next() && rs.getString(1) != null) {
+                    sequence = rs.getString(1);
+                    return sequence;
+                }
+            }
+        }
+        throw new SQLException("No sequence found behind " + table + "." + idColumn + ".");
+    }
+
+    /** A reserved run of ids; take() is lock-free. */
+    private static final class Block {
+        static final int EXHAUSTED = -1;
+
+        private final int[] ids;
+        private final AtomicInteger cursor = new AtomicInteger();
+
+        Block(int[] ids) {
+            this.ids = ids;
+        }
+
+        int take() {
+            int i = cursor.getAndIncrement();
+            return i < ids.length ? ids[i] : EXHAUSTED;
+        }
+    }
+}
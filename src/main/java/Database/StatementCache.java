@@ -0,0 +1,195 @@
+package Database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache of PreparedStatements for one physical connection, keyed by SQL text.
+ * DAOs keep calling connection.prepareStatement(sql) and closing the result; the pooled connection
+ * routes those calls here, so close() only resets the statement and the next caller with the same SQL
+ * reuses it. Reusing the same statement object is what lets pgjdbc switch it to a server-side
+ * prepared statement (after prepareThreshold executions) and skip the parse/plan.
+ * Not thread safe: a physical connection is only ever used by the thread that borrowed it.
+ */
+public class StatementCache {
+
+    /** Immutable snapshot of the counters, summed over every connection of a pool. */
+    public record Stats(long hits, long misses, long evictions) {
+        public double hitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0.0 : (double) hits / lookups;
+        }
+    }
+
+    private final Connection raw;
+    private final int capacity;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private final LinkedHashMap<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+    StatementCache(Connection raw, int capacity, LongAdder hits, LongAdder misses, LongAdder evictions) {
+        this.raw = raw;
+        this.capacity = capacity;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
+    /**
+     * Returns a statement for the given SQL, reusing the cached one when it is not already checked out.
+     * The same SQL prepared twice at once (e.g. nested loops) gets a plain uncached statement the second time.
+     */
+    PreparedStatement prepare(String sql, int autoGeneratedKeys, Connection owner) throws SQLException {
+        String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "keys:" + sql : sql;
+        CachedStatement cached = statements.get(key);
+        if (cached != null && !cached.inUse) {
+            hits.increment();
+            return cached.checkOut(owner);
+        }
+        misses.increment();
+        PreparedStatement ps = raw.prepareStatement(sql, autoGeneratedKeys);
+        if (cached != null || capacity <= 0) {
+            return ps;
+        }
+
+        CachedStatement entry = new CachedStatement(ps);
+        statements.put(key, entry);
+        evictOverflow();
+        return entry.checkOut(owner);
+    }
+
+    /** Called when the connection goes back to the pool: anything the borrower forgot to close is reset. */
+    void releaseAll() {
+        for (CachedStatement cs : statements.values()) {
+            if (cs.inUse) {
+                cs.checkIn();
+            }
+        }
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, CachedStatement>> it = statements.entrySet().iterator();
+        while (statements.size() > capacity && it.hasNext()) {
+            CachedStatement eldest = it.next().getValue();
+            it.remove();
+            evictions.increment();
+            if (eldest.inUse) {
+                eldest.evicted = true; // really closed once the current user is done with it
+            } else {
+                eldest.closeQuietly();
+            }
+        }
+    }
+
+    // ===== Helpers =====
+    private static final class CachedStatement implements InvocationHandler {
+        private final PreparedStatement ps;
+        private final List<ResultSet> openResults = new ArrayList<>();
+        private Connection owner;
+        private PreparedStatement lease;
+        private boolean inUse;
+        private boolean evicted;
+
+        private CachedStatement(PreparedStatement ps) {
+            this.ps = ps;
+        }
+
+        private PreparedStatement checkOut(Connection owner) {
+            this.owner = owner;
+            this.inUse = true;
+            // a fresh proxy per checkout so a stale reference cannot touch the next user's statement
+            this.lease = (PreparedStatement) Proxy.newProxyInstance(
+                    StatementCache.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    this);
+            return lease;
+        }
+
+        private void checkIn() {
+            inUse = false;
+            lease = null;
+            owner = null;
+            try {
+                for (ResultSet rs : openResults) {
+                    rs.close();
+                }
+                ps.clearParameters();
+                ps.clearBatch();
+                ps.setFetchSize(0);
+                ps.setMaxRows(0);
+            } catch (SQLException e) {
+                evicted = true;
+            } finally {
+                openResults.clear();
+            }
+            if (evicted) {
+                closeQuietly();
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                ps.close();
+            } catch (SQLException ignored) {
+                // the connection itself is probably gone
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            boolean current = proxy == lease;
+            switch (method.getName()) {
+                case "close" -> {
+                    if (current) {
+                        checkIn();
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return !current;
+                }
+                case "getConnection" -> {
+                    return owner;
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Cached[" + ps + "]";
+                }
+                default -> {
+                    if (!current) {
+                        throw new SQLException("Statement has already been closed.");
+                    }
+                }
+            }
+            Object result;
+            try {
+                result = method.invoke(ps, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof ResultSet rs) {
+                openResults.add(rs);
+            }
+            return result;
+        }
+    }
+}
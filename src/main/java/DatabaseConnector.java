@@ -1,18 +1,40 @@
+import Database.ConnectionPool;
+
+import javax.sql.DataSource;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public class DatabaseConnector {
 
-    private static final String URL = "jdbc:postgresql://localhost:5432/Hospital";
+    // reWriteBatchedInserts lets pgjdbc collapse executeBatch() INSERTs into multi-row statements
+    private static final String URL = "jdbc:postgresql://localhost:5432/Hospital?reWriteBatchedInserts=true";
     private static final String USER = "postgres";
     private static final String PASSWORD = "dimitris";
 
+    private static final int POOL_MIN_SIZE = 2;
+    private static final int POOL_MAX_SIZE = 10;
+    private static final long POOL_IDLE_TIMEOUT_MILLIS = 10 * 60 * 1000;
+    private static final long POOL_BORROW_TIMEOUT_MILLIS = 30 * 1000;
+    private static final int STATEMENT_CACHE_SIZE = 64;
+
+    private static final ConnectionPool POOL = new ConnectionPool(URL, USER, PASSWORD,
+            POOL_MIN_SIZE, POOL_MAX_SIZE, POOL_IDLE_TIMEOUT_MILLIS, POOL_BORROW_TIMEOUT_MILLIS,
+            STATEMENT_CACHE_SIZE);
+
+    /** Borrows a pooled connection; closing it returns it to the pool. */
     public static Connection getConnection() {
         try {
-            return DriverManager.getConnection(URL, USER, PASSWORD);
+            return POOL.getConnection();
         } catch (SQLException e) {
             throw new RuntimeException("Cannot connect to the database!", e);
         }
     }
+
+    public static DataSource getDataSource() {
+        return POOL;
+    }
+
+    public static void shutdown() {
+        POOL.close();
+    }
 }
@@ -0,0 +1,19 @@
+package Entities;
+
+import java.time.LocalDate;
+
+/**
+ * Admissions and discharges of one department in one period.
+ * period is the first day of the day, week (Monday), month or year the counts cover.
+ */
+public record AdmissionCounts(
+        LocalDate period,
+        int departmentId,
+        long admissions,
+        long discharges
+) {
+    @Override
+    public String toString() {
+        return "%s department %d: %d admissions, %d discharges".formatted(period, departmentId, admissions, discharges);
+    }
+}
@@ -0,0 +1,41 @@
+package Entities;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Admissions and discharges for every period of a range (rows, including periods with nothing in them)
+ * and every department that had any (columns): admissions[p][d] belongs to periods.get(p) and
+ * departmentIds.get(d).
+ */
+public record AdmissionMatrix(
+        List<LocalDate> periods,
+        List<Integer> departmentIds,
+        long[][] admissions,
+        long[][] discharges
+) {
+    public long totalAdmissions() {
+        long total = 0;
+        for (long[] row : admissions) {
+            for (long n : row) {
+                total += n;
+            }
+        }
+        return total;
+    }
+
+    public long totalDischarges() {
+        long total = 0;
+        for (long[] row : discharges) {
+            for (long n : row) {
+                total += n;
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "%d periods x %d departments".formatted(periods.size(), departmentIds.size());
+    }
+}
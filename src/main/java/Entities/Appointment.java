@@ -47,7 +47,7 @@ public class Appointment {
         if(doctorID <= 0) {
             throw new IllegalArgumentException("ID must be >0");
         }
-        this.doctorID = patientID;
+        this.doctorID = doctorID;
     }
 
     public LocalDateTime getAppointmentDate() {
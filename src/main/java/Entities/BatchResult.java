@@ -0,0 +1,24 @@
+package Entities;
+
+import java.util.List;
+
+/**
+ * Outcome of a batched write: the rows that made it, plus one Failure per rejected row.
+ * index is the row's position in the list the caller passed in.
+ */
+public record BatchResult<T>(
+        List<T> succeeded,
+        List<Failure<T>> failures
+) {
+    public record Failure<T>(int index, T row, String reason) {
+    }
+
+    public boolean hasFailures() {
+        return !failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "%d succeeded, %d failed".formatted(succeeded.size(), failures.size());
+    }
+}
@@ -0,0 +1,29 @@
+package Entities;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset-paginated listing.
+ * nextToken is opaque to callers: pass it back to get the following page, it is null on the last page.
+ */
+public record Page<T>(
+        List<T> items,
+        String nextToken
+) {
+    public boolean hasMore() {
+        return nextToken != null;
+    }
+
+    /**
+     * Builds a page from a query that asked for limit + 1 rows: the extra row only tells us another page exists
+     * and is dropped, and the token is taken from the last row that is kept.
+     */
+    public static <T> Page<T> fromOverfetch(List<T> rows, int limit, Function<T, String> tokenOf) {
+        if (rows.size() <= limit) {
+            return new Page<>(rows, null);
+        }
+        List<T> items = rows.subList(0, limit);
+        return new Page<>(List.copyOf(items), tokenOf.apply(items.get(limit - 1)));
+    }
+}
@@ -0,0 +1,18 @@
+package Entities;
+
+import java.time.LocalDateTime;
+
+/**
+ * A report's figures together with the time of the newest change they include
+ * (an admission, discharge, medical record or full rebuild of the summaries).
+ * asOf is null when the summaries hold nothing for the report yet.
+ */
+public record ReportSnapshot<T>(
+        T data,
+        LocalDateTime asOf
+) {
+    @Override
+    public String toString() {
+        return data + (asOf == null ? "" : " (as of " + asOf + ")");
+    }
+}
@@ -0,0 +1,20 @@
+package Entities;
+
+import java.util.List;
+
+/**
+ * Outcome of an upsert: how many rows were created, how many existing rows were changed,
+ * how many already matched and were left alone, plus one Failure per rejected input row.
+ */
+public record UpsertResult<T>(
+        int inserted,
+        int updated,
+        int unchanged,
+        List<BatchResult.Failure<T>> failures
+) {
+    @Override
+    public String toString() {
+        return "%d inserted, %d updated, %d unchanged, %d rejected"
+                .formatted(inserted, updated, unchanged, failures.size());
+    }
+}
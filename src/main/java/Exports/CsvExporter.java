@@ -0,0 +1,74 @@
+package Exports;
+
+import DAOs.ReportsAnalyticsDAO;
+import org.postgresql.PGConnection;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams query results to CSV files with COPY (SELECT ...) TO STDOUT.
+ * The server formats the CSV and pgjdbc hands the bytes straight to the file channel as they arrive,
+ * so memory use is a couple of buffers regardless of how many rows are exported.
+ */
+public class CsvExporter {
+
+    private static final int BUFFER_BYTES = 256 * 1024;
+
+    public enum Dataset {
+        PATIENTS("SELECT * FROM patient ORDER BY patient_id"),
+        MEDICAL_RECORDS("SELECT * FROM medical_record ORDER BY record_id"),
+        HOSPITALIZATIONS("SELECT * FROM hospitalization ORDER BY hospitalization_id"),
+        AVERAGE_LENGTH_OF_STAY(ReportsAnalyticsDAO.AVERAGE_LENGTH_OF_STAY_SQL),
+        DOCTOR_PATIENT_COUNTS(ReportsAnalyticsDAO.DOCTOR_PATIENT_COUNTS_SQL),
+        COVID_CASES(ReportsAnalyticsDAO.COVID_CASES_SQL),
+        BED_OCCUPANCY(ReportsAnalyticsDAO.BED_OCCUPANCY_SQL),
+        AVERAGE_AGE_OF_ADMITTED(ReportsAnalyticsDAO.AVERAGE_AGE_OF_ADMITTED_SQL);
+
+        private final String query;
+
+        Dataset(String query) {
+            this.query = query;
+        }
+    }
+
+    /** Returns the number of rows written (the header line is not counted). */
+    public long export(Dataset dataset, Path target, boolean gzip, Connection connection)
+            throws SQLException, IOException {
+        return copyOut(dataset.query, target, gzip, connection);
+    }
+
+    /** COPY takes no bind parameters, so the year is inlined; it is an int, so this is injection-safe. */
+    public long exportAdmissionsPerYear(int year, Path target, boolean gzip, Connection connection)
+            throws SQLException, IOException {
+        String query = ReportsAnalyticsDAO.ADMISSIONS_PER_YEAR_SQL.replace("?", Integer.toString(year));
+        return copyOut(query, target, gzip, connection);
+    }
+
+    private long copyOut(String query, Path target, boolean gzip, Connection connection)
+            throws SQLException, IOException {
+        String sql = "COPY (" + query.strip() + ") TO STDOUT WITH (FORMAT csv, HEADER)";
+
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             OutputStream out = open(channel, gzip)) {
+            return connection.unwrap(PGConnection.class).getCopyAPI().copyOut(sql, out);
+        }
+    }
+
+    private static OutputStream open(FileChannel channel, boolean gzip) throws IOException {
+        OutputStream file = Channels.newOutputStream(channel);
+        if (gzip) {
+            return new GZIPOutputStream(file, BUFFER_BYTES);
+        }
+        return new BufferedOutputStream(file, BUFFER_BYTES);
+    }
+}
@@ -0,0 +1,475 @@
+package Imports;
+
+import DAOs.AppointmentDAO;
+import DAOs.PatientDAO;
+import Entities.Appointment;
+import Entities.BatchResult;
+import Entities.MedicalRecord;
+import Entities.Patient;
+import Entities.UpsertResult;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Bulk CSV import through PostgreSQL COPY FROM STDIN.
+ * The file is read one record at a time, each record is validated with the entity setters, and valid rows
+ * are streamed into a temporary staging table with COPY. Rows that would break a constraint (existing AMKA,
+ * unknown patient or doctor, ...) are then moved out of staging with a few set-based statements, and the rest
+ * is copied into the real table with a single INSERT ... SELECT. Every rejected row, whether it failed
+ * validation or a database rule, is written to the rejects file together with its line number and reason.
+ * The whole import is one transaction.
+ */
+public class CsvImporter {
+
+    private static final int COPY_CHUNK_BYTES = 64 * 1024;
+    private static final int SYNC_BATCH_SIZE = 5_000;
+
+    private final PatientDAO patientDAO = new PatientDAO();
+
+    public record ImportResult(long rowsRead, long imported, long rejected) {
+        @Override
+        public String toString() {
+            return "%d rows read, %d imported, %d rejected".formatted(rowsRead, imported, rejected);
+        }
+    }
+
+    public record SyncResult(long rowsRead, long inserted, long updated, long unchanged, long rejected) {
+        @Override
+        public String toString() {
+            return "%d rows read, %d inserted, %d updated, %d unchanged, %d rejected"
+                    .formatted(rowsRead, inserted, updated, unchanged, rejected);
+        }
+    }
+
+    /** Turns the raw CSV fields into validated values in column order; throws on invalid data. */
+    @FunctionalInterface
+    private interface RowValidator {
+        String[] validate(String[] fields);
+    }
+
+    /** A database-side rejection rule, written as a condition over staging alias s. */
+    private record Rule(String reason, String condition) {
+    }
+
+    private record Column(String name, String sqlType) {
+    }
+
+    private record TableSpec(String table, List<Column> columns, RowValidator validator, List<Rule> rules) {
+    }
+
+    private static final TableSpec PATIENTS = new TableSpec("patient",
+            List.of(new Column("first_name", "text"),
+                    new Column("last_name", "text"),
+                    new Column("date_of_birth", "date"),
+                    new Column("gender", "text"),
+                    new Column("phone", "text"),
+                    new Column("amka", "text")),
+            f -> {
+                Patient p = new Patient();
+                p.setFirstName(f[0]);
+                p.setLastName(f[1]);
+                p.setDateOfBirth(blankToNull(f[2]) == null ? null : LocalDate.parse(f[2].trim()));
+                p.setGender(blankToNull(f[3]));
+                p.setPhone(blankToNull(f[4]));
+                if (blankToNull(f[5]) == null) {
+                    throw new IllegalArgumentException("AMKA is required.");
+                }
+                p.setAmka(f[5].trim());
+                return new String[]{p.getFirstName(), p.getLastName(), toText(p.getDateOfBirth()),
+                        p.getGender(), p.getPhone(), p.getAmka()};
+            },
+            List.of(new Rule("A patient with this AMKA already exists.",
+                            "EXISTS (SELECT 1 FROM patient t WHERE t.amka = s.amka)"),
+                    new Rule("Duplicate AMKA earlier in the file.",
+                            "EXISTS (SELECT 1 FROM import_staging o WHERE o.amka = s.amka AND o.line_no < s.line_no)")));
+
+    private static final TableSpec APPOINTMENTS = new TableSpec("appointment",
+            List.of(new Column("patient_id", "integer"),
+                    new Column("doctor_id", "integer"),
+                    new Column("appointment_datetime", "timestamp"),
+                    new Column("reason", "text")),
+            f -> {
+                Appointment a = new Appointment();
+                a.setPatientID(Integer.parseInt(f[0].trim()));
+                a.setDoctorID(Integer.parseInt(f[1].trim()));
+                a.setAppointmentDate(LocalDateTime.parse(f[2].trim()));
+                a.setReason(blankToNull(f[3]));
+                return new String[]{Integer.toString(a.getPatientID()), Integer.toString(a.getDoctorID()),
+                        toText(a.getAppointmentDate()), a.getReason()};
+            },
+            List.of(new Rule("Unknown patient_id.",
+                            "NOT EXISTS (SELECT 1 FROM patient t WHERE t.patient_id = s.patient_id)"),
+                    new Rule("Unknown doctor_id.",
+                            "NOT EXISTS (SELECT 1 FROM doctor t WHERE t.doctor_id = s.doctor_id)"),
+                    // same slot expression as appointment_no_double_booking, so its gist index is used
+                    new Rule("The doctor already has an appointment in this slot.",
+                            "EXISTS (SELECT 1 FROM appointment t WHERE t.doctor_id = s.doctor_id"
+                                    + " AND tsrange(t.appointment_datetime, t.appointment_datetime + interval '20 minutes')"
+                                    + " && tsrange(s.appointment_datetime, s.appointment_datetime + interval '20 minutes'))"),
+                    new Rule("Overlaps an appointment of the same doctor earlier in the file.",
+                            "EXISTS (SELECT 1 FROM import_staging o WHERE o.doctor_id = s.doctor_id AND o.line_no < s.line_no"
+                                    + " AND tsrange(o.appointment_datetime, o.appointment_datetime + interval '20 minutes')"
+                                    + " && tsrange(s.appointment_datetime, s.appointment_datetime + interval '20 minutes'))")));
+
+    private static final TableSpec MEDICAL_RECORDS = new TableSpec("medical_record",
+            List.of(new Column("patient_id", "integer"),
+                    new Column("doctor_id", "integer"),
+                    new Column("record_datetime", "timestamp"),
+                    new Column("diagnosis", "text"),
+                    new Column("treatment", "text"),
+                    new Column("notes", "text")),
+            f -> {
+                MedicalRecord mr = new MedicalRecord();
+                mr.setPatientId(Integer.parseInt(f[0].trim()));
+                mr.setDoctorId(blankToNull(f[1]) == null ? null : Integer.parseInt(f[1].trim()));
+                mr.setRecordDateTime(LocalDateTime.parse(f[2].trim()));
+                mr.setDiagnosis(f[3]);
+                mr.setTreatment(f[4]);
+                mr.setNotes(blankToNull(f[5]));
+                return new String[]{Integer.toString(mr.getPatientId()), toText(mr.getDoctorId()),
+                        toText(mr.getRecordDateTime()), mr.getDiagnosis(), mr.getTreatment(), mr.getNotes()};
+            },
+            List.of(new Rule("Unknown patient_id.",
+                            "NOT EXISTS (SELECT 1 FROM patient t WHERE t.patient_id = s.patient_id)"),
+                    new Rule("Unknown doctor_id.",
+                            "s.doctor_id IS NOT NULL AND NOT EXISTS (SELECT 1 FROM doctor t WHERE t.doctor_id = s.doctor_id)")));
+
+    /** Expects a header row with first_name,last_name,date_of_birth,gender,phone,amka (any order). */
+    public ImportResult importPatients(Path csv, Path rejects, Connection connection) throws SQLException, IOException {
+        return importCsv(PATIENTS, csv, rejects, connection);
+    }
+
+    /** Expects a header row with patient_id,doctor_id,appointment_datetime,reason (datetime as yyyy-MM-ddTHH:mm). */
+    public ImportResult importAppointments(Path csv, Path rejects, Connection connection) throws SQLException, IOException {
+        return importCsv(APPOINTMENTS, csv, rejects, connection);
+    }
+
+    /** Expects a header row with patient_id,doctor_id,record_datetime,diagnosis,treatment,notes. */
+    public ImportResult importMedicalRecords(Path csv, Path rejects, Connection connection) throws SQLException, IOException {
+        return importCsv(MEDICAL_RECORDS, csv, rejects, connection);
+    }
+
+    /**
+     * Registry feed sync: same file layout as importPatients, but patients whose AMKA already exists are
+     * updated instead of rejected. Rows go through PatientDAO.upsertPatientsByAmka in batches; each batch is
+     * committed on its own when the connection is in auto-commit mode.
+     */
+    public SyncResult syncPatients(Path csvFile, Path rejectsFile, Connection connection) throws SQLException, IOException {
+        try (CsvReader csv = new CsvReader(Files.newBufferedReader(csvFile, StandardCharsets.UTF_8));
+             BufferedWriter rejects = Files.newBufferedWriter(rejectsFile, StandardCharsets.UTF_8)) {
+
+            writeCsvLine(rejects, headerWith("line", "reason", PATIENTS));
+            String[] header = csv.next();
+            if (header == null) {
+                return new SyncResult(0, 0, 0, 0, 0);
+            }
+            int[] positions = columnPositions(PATIENTS, header);
+
+            long read = 0;
+            long[] totals = new long[4]; // inserted, updated, unchanged, rejected
+            List<Patient> batch = new ArrayList<>(SYNC_BATCH_SIZE);
+            List<Long> batchLines = new ArrayList<>(SYNC_BATCH_SIZE);
+            String[] record;
+            while ((record = csv.next()) != null) {
+                read++;
+                try {
+                    batch.add(toPatient(PATIENTS.validator().validate(pick(record, positions))));
+                    batchLines.add(csv.recordLine());
+                } catch (RuntimeException e) {
+                    totals[3]++;
+                    writeReject(rejects, csv.recordLine(), "Invalid data: " + e.getMessage(), record);
+                    continue;
+                }
+                if (batch.size() == SYNC_BATCH_SIZE) {
+                    flushSync(batch, batchLines, totals, rejects, connection);
+                }
+            }
+            flushSync(batch, batchLines, totals, rejects, connection);
+            return new SyncResult(read, totals[0], totals[1], totals[2], totals[3]);
+        }
+    }
+
+    /** Upserts one batch, adds its counts to totals and writes its failures to the rejects file. */
+    private void flushSync(List<Patient> batch, List<Long> batchLines, long[] totals, BufferedWriter rejects,
+                           Connection connection) throws SQLException, IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        UpsertResult<Patient> result = patientDAO.upsertPatientsByAmka(batch, batch.size(), connection);
+        for (BatchResult.Failure<Patient> f : result.failures()) {
+            Patient p = f.row();
+            writeReject(rejects, batchLines.get(f.index()), f.reason(), new String[]{p.getFirstName(),
+                    p.getLastName(), toText(p.getDateOfBirth()), p.getGender(), p.getPhone(), p.getAmka()});
+        }
+        totals[0] += result.inserted();
+        totals[1] += result.updated();
+        totals[2] += result.unchanged();
+        totals[3] += result.failures().size();
+        batch.clear();
+        batchLines.clear();
+    }
+
+    private static Patient toPatient(String[] values) {
+        Patient p = new Patient();
+        p.setFirstName(values[0]);
+        p.setLastName(values[1]);
+        p.setDateOfBirth(values[2] == null ? null : LocalDate.parse(values[2]));
+        p.setGender(values[3]);
+        p.setPhone(values[4]);
+        p.setAmka(values[5]);
+        return p;
+    }
+
+    private ImportResult importCsv(TableSpec spec, Path csvFile, Path rejectsFile, Connection connection)
+            throws SQLException, IOException {
+        boolean ownTransaction = connection.getAutoCommit();
+        if (ownTransaction) {
+            connection.setAutoCommit(false);
+        }
+        try (CsvReader csv = new CsvReader(Files.newBufferedReader(csvFile, StandardCharsets.UTF_8));
+             BufferedWriter rejects = Files.newBufferedWriter(rejectsFile, StandardCharsets.UTF_8)) {
+
+            writeCsvLine(rejects, headerWith("line", "reason", spec));
+            createStaging(spec, connection);
+
+            long[] counts = copyIntoStaging(spec, csv, rejects, connection);
+            long rowsRead = counts[0];
+            long rejected = counts[1];
+
+            try (Statement st = connection.createStatement()) {
+                st.execute("ANALYZE import_staging");
+            }
+            for (Rule rule : spec.rules()) {
+                rejected += moveRejects(spec, rule, rejects, connection);
+            }
+            List<Integer> doctorIds = spec == APPOINTMENTS ? stagedDoctors(connection) : List.of();
+            long imported = insertFromStaging(spec, connection);
+
+            if (ownTransaction) {
+                connection.commit();
+            }
+            // the new appointments went around AppointmentDAO's schedule index
+            AppointmentDAO.forgetSchedules(doctorIds);
+            return new ImportResult(rowsRead, imported, rejected);
+        } catch (SQLException | IOException | RuntimeException e) {
+            if (ownTransaction) {
+                connection.rollback();
+            }
+            throw e;
+        } finally {
+            if (ownTransaction) {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private void createStaging(TableSpec spec, Connection connection) throws SQLException {
+        StringJoiner cols = new StringJoiner(", ", "CREATE TEMP TABLE import_staging (line_no bigint, ", ") ON COMMIT DROP");
+        for (Column c : spec.columns()) {
+            cols.add(c.name() + " " + c.sqlType());
+        }
+        try (Statement st = connection.createStatement()) {
+            st.execute(cols.toString());
+        }
+    }
+
+    /** Streams valid rows into staging with COPY; returns {rows read, rows rejected by validation}. */
+    private long[] copyIntoStaging(TableSpec spec, CsvReader csv, BufferedWriter rejects, Connection connection)
+            throws SQLException, IOException {
+        String[] header = csv.next();
+        if (header == null) {
+            return new long[]{0, 0};
+        }
+        int[] positions = columnPositions(spec, header);
+
+        String copySql = "COPY import_staging (line_no, " + columnList(spec) + ") FROM STDIN WITH (FORMAT csv)";
+        CopyIn copy = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(copySql);
+
+        long read = 0;
+        long rejected = 0;
+        StringBuilder chunk = new StringBuilder(COPY_CHUNK_BYTES + 1024);
+        try {
+            String[] record;
+            while ((record = csv.next()) != null) {
+                read++;
+                long lineNo = csv.recordLine();
+                String[] values;
+                try {
+                    values = spec.validator().validate(pick(record, positions));
+                } catch (RuntimeException e) {
+                    rejected++;
+                    writeReject(rejects, lineNo, "Invalid data: " + e.getMessage(), record);
+                    continue;
+                }
+
+                chunk.append(lineNo);
+                for (String v : values) {
+                    chunk.append(',');
+                    appendCsvValue(chunk, v);
+                }
+                chunk.append('\n');
+                if (chunk.length() >= COPY_CHUNK_BYTES) {
+                    writeChunk(copy, chunk);
+                }
+            }
+            writeChunk(copy, chunk);
+            copy.endCopy();
+        } finally {
+            if (copy.isActive()) {
+                copy.cancelCopy();
+            }
+        }
+        return new long[]{read, rejected};
+    }
+
+    private long moveRejects(TableSpec spec, Rule rule, BufferedWriter rejects, Connection connection)
+            throws SQLException, IOException {
+        String sql = "DELETE FROM import_staging s WHERE " + rule.condition()
+                + " RETURNING s.line_no, " + qualifiedColumnList(spec);
+        long moved = 0;
+        try (PreparedStatement ps = connection.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            int n = spec.columns().size();
+            while (rs.next()) {
+                String[] values = new String[n];
+                for (int i = 0; i < n; i++) {
+                    values[i] = rs.getString(i + 2);
+                }
+                writeReject(rejects, rs.getLong(1), rule.reason(), values);
+                moved++;
+            }
+        }
+        return moved;
+    }
+
+    private List<Integer> stagedDoctors(Connection connection) throws SQLException {
+        List<Integer> doctorIds = new ArrayList<>();
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("SELECT DISTINCT doctor_id FROM import_staging")) {
+            while (rs.next()) {
+                doctorIds.add(rs.getInt(1));
+            }
+        }
+        return doctorIds;
+    }
+
+    private long insertFromStaging(TableSpec spec, Connection connection) throws SQLException {
+        String cols = columnList(spec);
+        String sql = "INSERT INTO " + spec.table() + " (" + cols + ") SELECT " + cols
+                + " FROM import_staging ORDER BY line_no";
+        try (Statement st = connection.createStatement()) {
+            return st.executeLargeUpdate(sql);
+        }
+    }
+
+    // ===== Helpers =====
+    private static int[] columnPositions(TableSpec spec, String[] header) throws IOException {
+        Map<String, Integer> byName = new HashMap<>();
+        for (int i = 0; i < header.length; i++) {
+            byName.put(header[i].trim().toLowerCase(), i);
+        }
+        int[] positions = new int[spec.columns().size()];
+        for (int i = 0; i < positions.length; i++) {
+            Integer p = byName.get(spec.columns().get(i).name());
+            if (p == null) {
+                throw new IOException("CSV header is missing column '" + spec.columns().get(i).name() + "'.");
+            }
+            positions[i] = p;
+        }
+        return positions;
+    }
+
+    private static String[] pick(String[] record, int[] positions) {
+        String[] fields = new String[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            fields[i] = positions[i] < record.length ? record[positions[i]] : "";
+        }
+        return fields;
+    }
+
+    private static void writeChunk(CopyIn copy, StringBuilder chunk) throws SQLException {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        byte[] bytes = chunk.toString().getBytes(StandardCharsets.UTF_8);
+        copy.writeToCopy(bytes, 0, bytes.length);
+        chunk.setLength(0);
+    }
+
+    /** COPY csv format: unquoted empty means NULL, so every real value is quoted. */
+    private static void appendCsvValue(StringBuilder sb, String value) {
+        if (value == null) {
+            return;
+        }
+        sb.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    private static void writeReject(BufferedWriter rejects, long lineNo, String reason, String[] values)
+            throws IOException {
+        String[] row = new String[values.length + 2];
+        row[0] = Long.toString(lineNo);
+        row[1] = reason;
+        System.arraycopy(values, 0, row, 2, values.length);
+        writeCsvLine(rejects, row);
+    }
+
+    private static void writeCsvLine(BufferedWriter out, String[] values) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            appendCsvValue(sb, values[i]);
+        }
+        out.write(sb.toString());
+        out.newLine();
+    }
+
+    private static String[] headerWith(String first, String second, TableSpec spec) {
+        String[] header = new String[spec.columns().size() + 2];
+        header[0] = first;
+        header[1] = second;
+        for (int i = 0; i < spec.columns().size(); i++) {
+            header[i + 2] = spec.columns().get(i).name();
+        }
+        return header;
+    }
+
+    private static String columnList(TableSpec spec) {
+        StringJoiner j = new StringJoiner(", ");
+        spec.columns().forEach(c -> j.add(c.name()));
+        return j.toString();
+    }
+
+    private static String qualifiedColumnList(TableSpec spec) {
+        StringJoiner j = new StringJoiner(", ");
+        spec.columns().forEach(c -> j.add("s." + c.name()));
+        return j.toString();
+    }
+
+    private static String blankToNull(String s) {
+        return (s == null || s.isBlank()) ? null : s;
+    }
+
+    private static String toText(Object value) {
+        return value == null ? null : value.toString();
+    }
+}
@@ -1,27 +1,36 @@
 package Menus;
 
 import DAOs.AppointmentDAO;
+import DAOs.DoctorDAO;
 import Entities.Appointment;
+import Entities.Doctor;
+import Scheduling.SlotFinder;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
-import java.sql.Date;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.stream.Collectors;
 
 public class AppointmentMenu {
 
     private final AppointmentDAO appointmentDAO;
-    private final Connection connection;
+    private final DoctorDAO doctorDAO;
+    private final DataSource dataSource;
     private final Scanner scanner;
 
-    public AppointmentMenu(Connection connection, Scanner scanner) {
-        this.connection = connection;
+    public AppointmentMenu(DataSource dataSource, Scanner scanner) {
+        this.dataSource = dataSource;
         this.scanner = scanner;
         this.appointmentDAO = new AppointmentDAO();
+        this.doctorDAO = new DoctorDAO();
     }
 
     public void show() {
@@ -33,7 +42,8 @@ public class AppointmentMenu {
             System.out.println("4. Delete appointment");
             System.out.println("5. List appointments by doctor");
             System.out.println("6. List appointments by patient");
-            System.out.println("7. List appointments in date interval (by date only)");
+            System.out.println("7. List appointments in time range");
+            System.out.println("8. Find free slots in a department");
             System.out.println("0. Back");
             System.out.print("Choice: ");
 
@@ -54,6 +64,7 @@ public class AppointmentMenu {
                 case 5 -> listByDoctor();
                 case 6 -> listByPatient();
                 case 7 -> listInDateInterval();
+                case 8 -> findFreeSlots();
                 case 0 -> { return; }
                 default -> System.out.println("Invalid choice.");
             }
@@ -61,14 +72,10 @@ public class AppointmentMenu {
     }
 
     private void listAll() {
-        try {
-            List<Appointment> list = appointmentDAO.findAll(connection);
-            if (list.isEmpty()) {
+        try (Connection connection = dataSource.getConnection()) {
+            int count = appointmentDAO.streamAll(System.out::println, connection);
+            if (count == 0) {
                 System.out.println("No appointments found.");
-                return;
-            }
-            for (Appointment a : list) {
-                System.out.println(a);
             }
         } catch (SQLException e) {
             System.out.println("Database error while listing appointments: " + e.getMessage());
@@ -76,7 +83,7 @@ public class AppointmentMenu {
     }
 
     private void addAppointment() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             System.out.print("Patient ID: ");
             int patientId = Integer.parseInt(scanner.nextLine());
 
@@ -109,7 +116,7 @@ public class AppointmentMenu {
     }
 
     private void updateAppointment() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             System.out.print("Enter appointment ID: ");
             int id = Integer.parseInt(scanner.nextLine());
 
@@ -160,7 +167,7 @@ public class AppointmentMenu {
     }
 
     private void deleteAppointment() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             System.out.print("Enter appointment ID to delete: ");
             int id = Integer.parseInt(scanner.nextLine());
 
@@ -178,7 +185,7 @@ public class AppointmentMenu {
     }
 
     private void listByDoctor() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             System.out.print("Doctor ID: ");
             int doctorId = Integer.parseInt(scanner.nextLine());
 
@@ -198,7 +205,7 @@ public class AppointmentMenu {
     }
 
     private void listByPatient() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             System.out.print("Patient ID: ");
             int patientId = Integer.parseInt(scanner.nextLine());
 
@@ -218,27 +225,90 @@ public class AppointmentMenu {
     }
 
     private void listInDateInterval() {
-        try {
-            System.out.print("From date (yyyy-MM-dd): ");
+        try (Connection connection = dataSource.getConnection()) {
+            System.out.print("From (yyyy-MM-dd or yyyy-MM-ddTHH:mm): ");
+            LocalDateTime from = parseBound(scanner.nextLine(), false);
+            System.out.print("To (yyyy-MM-dd for the whole day, or yyyy-MM-ddTHH:mm exclusive): ");
+            LocalDateTime to = parseBound(scanner.nextLine(), true);
+
+            System.out.print("Doctor ID (empty for any): ");
+            String doctorStr = scanner.nextLine();
+            Integer doctorId = doctorStr.isBlank() ? null : Integer.parseInt(doctorStr);
+
+            System.out.print("Department ID (empty for any): ");
+            String departmentStr = scanner.nextLine();
+            Integer departmentId = departmentStr.isBlank() ? null : Integer.parseInt(departmentStr);
+
+            int count = appointmentDAO.streamRange(from, to, doctorId, departmentId, System.out::print, connection);
+            if (count == 0) {
+                System.out.println("No appointments in this range.");
+            }
+        } catch (SQLException e) {
+            System.out.println("Database error while listing range: " + e.getMessage());
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid number format.");
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid date format.");
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid data: " + e.getMessage());
+        }
+    }
+
+    /** A bare date means the start of that day, or for an end bound the start of the next day. */
+    private static LocalDateTime parseBound(String text, boolean end) {
+        String trimmed = text.trim();
+        if (trimmed.contains("T")) {
+            return LocalDateTime.parse(trimmed);
+        }
+        LocalDate day = LocalDate.parse(trimmed);
+        return (end ? day.plusDays(1) : day).atStartOfDay();
+    }
+
+    private void findFreeSlots() {
+        try (Connection connection = dataSource.getConnection()) {
+            System.out.print("Department name: ");
+            String department = scanner.nextLine();
+
+            System.out.print("From (yyyy-MM-ddTHH:mm, empty for now): ");
             String fromStr = scanner.nextLine();
-            System.out.print("To date (yyyy-MM-dd): ");
-            String toStr = scanner.nextLine();
+            LocalDateTime from = fromStr.isBlank() ? LocalDateTime.now() : LocalDateTime.parse(fromStr);
 
-            Date from = Date.valueOf(LocalDate.parse(fromStr));
-            Date to = Date.valueOf(LocalDate.parse(toStr));
+            System.out.print("Days to search (empty for 7): ");
+            String daysStr = scanner.nextLine();
+            int days = daysStr.isBlank() ? 7 : Integer.parseInt(daysStr);
 
-            List<Appointment> list = appointmentDAO.listAppointmentsInDateInterval(from, to, connection);
-            if (list.isEmpty()) {
-                System.out.println("No appointments in this interval.");
+            System.out.print("Number of slots (empty for 10): ");
+            String countStr = scanner.nextLine();
+            int count = countStr.isBlank() ? 10 : Integer.parseInt(countStr);
+
+            List<Doctor> doctors = doctorDAO.findDoctorsByDepartmentName(department, connection);
+            if (doctors.isEmpty()) {
+                System.out.println("No doctors in this department.");
                 return;
             }
-            for (Appointment a : list) {
-                System.out.println(a);
+            Map<Integer, Doctor> byId = new HashMap<>();
+            doctors.forEach(d -> byId.put(d.getDoctorId(), d));
+
+            List<SlotFinder.FreeSlot> slots =
+                    appointmentDAO.findFreeSlots(byId.keySet(), from, from.plusDays(days), count, connection);
+            if (slots.isEmpty()) {
+                System.out.println("No free slots in this period.");
+                return;
+            }
+            for (SlotFinder.FreeSlot slot : slots) {
+                String names = slot.doctorIds().stream()
+                        .map(id -> byId.get(id).getFirstName() + " " + byId.get(id).getLastName())
+                        .collect(Collectors.joining(", "));
+                System.out.println(slot.start() + "  " + names);
             }
         } catch (SQLException e) {
-            System.out.println("Database error while listing interval: " + e.getMessage());
-        } catch (IllegalArgumentException e) {
+            System.out.println("Database error while searching free slots: " + e.getMessage());
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid number format.");
+        } catch (DateTimeParseException e) {
             System.out.println("Invalid date format.");
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid data: " + e.getMessage());
         }
     }
 }
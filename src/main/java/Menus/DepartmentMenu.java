@@ -3,19 +3,22 @@ package Menus;
 import DAOs.DepartmentDAO;
 import Entities.Department;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
 public class DepartmentMenu {
 
     private final DepartmentDAO departmentDAO;
-    private final Connection connection;
+    private final DataSource dataSource;
     private final Scanner scanner;
 
-    public DepartmentMenu(Connection connection, Scanner scanner) {
-        this.connection = connection;
+    public DepartmentMenu(DataSource dataSource, Scanner scanner) {
+        this.dataSource = dataSource;
         this.scanner = scanner;
         this.departmentDAO = new DepartmentDAO();
     }
@@ -60,7 +63,7 @@ public class DepartmentMenu {
 
     // ============== LIST ==============
     private void listAllDepartments() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             List<Department> departments = departmentDAO.findAll(connection);
             if (departments.isEmpty()) {
                 System.out.println("No departments found.");
@@ -76,7 +79,7 @@ public class DepartmentMenu {
 
     // ============== INSERT ==============
     private void addDepartment() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             System.out.print("Department name: ");
             String name = scanner.nextLine();
 
@@ -101,7 +104,7 @@ public class DepartmentMenu {
 
     // ============== UPDATE (dynamic) ==============
     private void updateDepartment() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             System.out.print("Enter department ID to update: ");
             int id = Integer.parseInt(scanner.nextLine());
 
@@ -113,11 +116,13 @@ public class DepartmentMenu {
 
             System.out.println("Updating department: " + existing.getName());
 
+            Map<String, Object> changes = new LinkedHashMap<>();
+
             while (true) {
                 System.out.println("\nChoose field to update:");
                 System.out.println("1. Name");
                 System.out.println("2. Capacity");
-                System.out.println("0. Finish");
+                System.out.println("0. Save and finish");
                 System.out.print("Choice: ");
 
                 String input = scanner.nextLine();
@@ -130,7 +135,13 @@ public class DepartmentMenu {
                 }
 
                 if (choice == 0) {
-                    System.out.println("Done updating.");
+                    if (changes.isEmpty()) {
+                        System.out.println("Nothing to update.");
+                        return;
+                    }
+                    int rows = departmentDAO.updateDepartmentFields(id, changes, connection);
+                    if (rows == 0) System.out.println("Nothing updated.");
+                    else System.out.println(changes.size() + " field(s) updated successfully.");
                     return;
                 }
 
@@ -155,12 +166,7 @@ public class DepartmentMenu {
                     }
                 }
 
-                int rows = departmentDAO.updateDepartmentField(id, field, value, connection);
-                if (rows == 0) {
-                    System.out.println("Nothing updated.");
-                } else {
-                    System.out.println("Field updated successfully.");
-                }
+                changes.put(field, value);
             }
         } catch (SQLException e) {
             System.out.println("Database error while updating department: " + e.getMessage());
@@ -173,7 +179,7 @@ public class DepartmentMenu {
 
     // ============== DELETE ==============
     private void deleteDepartment() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             System.out.print("Enter department ID to delete: ");
             int id = Integer.parseInt(scanner.nextLine());
 
@@ -192,7 +198,7 @@ public class DepartmentMenu {
 
     // ============== FIND BY ID ==============
     private void findDepartmentById() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             System.out.print("Enter department ID: ");
             int id = Integer.parseInt(scanner.nextLine());
 
@@ -211,7 +217,7 @@ public class DepartmentMenu {
 
     // ============== FIND BY NAME ==============
     private void findDepartmentByName() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             System.out.print("Enter department name: ");
             String name = scanner.nextLine();
 
@@ -228,7 +234,7 @@ public class DepartmentMenu {
 
     // ============== COUNT ==============
     private void countDepartments() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             int count = departmentDAO.countDepartments(connection);
             System.out.println("Total departments: " + count);
         } catch (SQLException e) {
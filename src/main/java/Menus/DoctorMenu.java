@@ -1,19 +1,22 @@
 package Menus;
 import Entities.Doctor;
 import DAOs.DoctorDAO;
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
 public class DoctorMenu {
 
     private final DoctorDAO doctorDAO;
-    private final Connection connection;
+    private final DataSource dataSource;
     private final Scanner scanner;
 
-    public DoctorMenu(Connection connection, Scanner scanner) {
-        this.connection = connection;
+    public DoctorMenu(DataSource dataSource, Scanner scanner) {
+        this.dataSource = dataSource;
         this.scanner = scanner;
         this.doctorDAO = new DoctorDAO();
     }
@@ -55,7 +58,7 @@ public class DoctorMenu {
 
     // ================= LIST =================
     private void listAllDoctors() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             List<Doctor> doctors = doctorDAO.findAll(connection);
             if (doctors.isEmpty()) {
                 System.out.println("No doctors found.");
@@ -71,7 +74,7 @@ public class DoctorMenu {
 
     // ================= INSERT =================
     private void addDoctor() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             System.out.print("First name: ");
             String firstName = scanner.nextLine();
 
@@ -111,7 +114,7 @@ public class DoctorMenu {
 
     // ================= UPDATE (dynamic) =================
     private void updateDoctor() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             System.out.print("Enter doctor ID: ");
             int id = Integer.parseInt(scanner.nextLine());
 
@@ -124,6 +127,8 @@ public class DoctorMenu {
             Doctor existing = opt.get();
             System.out.println("Updating doctor: " + existing.getFirstName() + " " + existing.getLastName());
 
+            Map<String, Object> changes = new LinkedHashMap<>();
+
             while (true) {
                 System.out.println("\nChoose field to update:");
                 System.out.println("1. First name");
@@ -131,12 +136,18 @@ public class DoctorMenu {
                 System.out.println("3. Specialty");
                 System.out.println("4. Phone");
                 System.out.println("5. Department ID");
-                System.out.println("0. Finish");
+                System.out.println("0. Save and finish");
                 System.out.print("Choice: ");
 
                 int choice = Integer.parseInt(scanner.nextLine());
                 if (choice == 0) {
-                    System.out.println("Done updating.");
+                    if (changes.isEmpty()) {
+                        System.out.println("Nothing to update.");
+                        return;
+                    }
+                    int rows = doctorDAO.updateDoctorFields(id, changes, connection);
+                    if (rows == 0) System.out.println("Nothing updated.");
+                    else System.out.println(changes.size() + " field(s) updated successfully.");
                     return;
                 }
 
@@ -177,9 +188,7 @@ public class DoctorMenu {
                     }
                 }
 
-                int rows = doctorDAO.updateDoctorField(id, field, value, connection);
-                if (rows == 0) System.out.println("Nothing updated.");
-                else System.out.println("Updated successfully.");
+                changes.put(field, value);
             }
         } catch (SQLException e) {
             System.out.println("Database error while updating doctor: " + e.getMessage());
@@ -192,7 +201,7 @@ public class DoctorMenu {
 
     // ================= DELETE =================
     private void deleteDoctor() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             System.out.print("Enter doctor ID to delete: ");
             int id = Integer.parseInt(scanner.nextLine());
 
@@ -211,7 +220,7 @@ public class DoctorMenu {
 
     // ================= FIND BY ID =================
     private void findDoctorById() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             System.out.print("Enter doctor ID: ");
             int id = Integer.parseInt(scanner.nextLine());
 
@@ -0,0 +1,99 @@
+package Menus;
+
+import Exports.CsvExporter;
+import Exports.CsvExporter.Dataset;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Scanner;
+
+public class ExportMenu {
+
+    private final CsvExporter exporter;
+    private final DataSource dataSource;
+    private final Scanner scanner;
+
+    public ExportMenu(DataSource dataSource, Scanner scanner) {
+        this.dataSource = dataSource;
+        this.scanner = scanner;
+        this.exporter = new CsvExporter();
+    }
+
+    public void show() {
+        while (true) {
+            System.out.println("\n=== CSV EXPORT MENU ===");
+            System.out.println("1. Patients");
+            System.out.println("2. Medical records");
+            System.out.println("3. Hospitalizations");
+            System.out.println("4. Report: average length of stay per department");
+            System.out.println("5. Report: doctors and number of patients");
+            System.out.println("6. Report: COVID cases");
+            System.out.println("7. Report: bed occupancy per department");
+            System.out.println("8. Report: average age of admitted patients");
+            System.out.println("9. Report: admissions per department for a year");
+            System.out.println("0. Back");
+            System.out.print("Choice: ");
+
+            String input = scanner.nextLine();
+            int choice;
+            try {
+                choice = Integer.parseInt(input);
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid number.");
+                continue;
+            }
+
+            switch (choice) {
+                case 1 -> export(Dataset.PATIENTS);
+                case 2 -> export(Dataset.MEDICAL_RECORDS);
+                case 3 -> export(Dataset.HOSPITALIZATIONS);
+                case 4 -> export(Dataset.AVERAGE_LENGTH_OF_STAY);
+                case 5 -> export(Dataset.DOCTOR_PATIENT_COUNTS);
+                case 6 -> export(Dataset.COVID_CASES);
+                case 7 -> export(Dataset.BED_OCCUPANCY);
+                case 8 -> export(Dataset.AVERAGE_AGE_OF_ADMITTED);
+                case 9 -> export(null);
+                case 0 -> { return; }
+                default -> System.out.println("Invalid choice.");
+            }
+        }
+    }
+
+    /** A null dataset means the per-year admissions report, which needs a year. */
+    private void export(Dataset dataset) {
+        try {
+            Integer year = null;
+            if (dataset == null) {
+                System.out.print("Enter year (e.g. 2025): ");
+                year = Integer.parseInt(scanner.nextLine());
+            }
+
+            System.out.print("Target file path: ");
+            String pathStr = scanner.nextLine();
+            if (pathStr.isBlank()) {
+                System.out.println("No file given.");
+                return;
+            }
+            System.out.print("Gzip compress? (y/N): ");
+            boolean gzip = scanner.nextLine().trim().equalsIgnoreCase("y");
+            Path target = Path.of(pathStr.trim() + (gzip && !pathStr.trim().endsWith(".gz") ? ".gz" : ""));
+
+            long rows;
+            try (Connection connection = dataSource.getConnection()) {
+                rows = (year == null)
+                        ? exporter.export(dataset, target, gzip, connection)
+                        : exporter.exportAdmissionsPerYear(year, target, gzip, connection);
+            }
+            System.out.println("Exported " + rows + " rows to " + target);
+        } catch (SQLException e) {
+            System.out.println("Database error during export: " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println("File error during export: " + e.getMessage());
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid year format.");
+        }
+    }
+}
@@ -3,21 +3,25 @@ package Menus;
 import DAOs.HospitalizationDAO;
 import Entities.Hospitalization;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
 public class HospitalizationMenu {
 
     private final HospitalizationDAO hospitalizationDAO;
-    private final Connection connection;
+    private final DataSource dataSource;
     private final Scanner scanner;
 
-    public HospitalizationMenu(Connection connection, Scanner scanner) {
-        this.connection = connection;
+    public HospitalizationMenu(DataSource dataSource, Scanner scanner) {
+        this.dataSource = dataSource;
         this.scanner = scanner;
         this.hospitalizationDAO = new HospitalizationDAO();
     }
@@ -31,8 +35,9 @@ public class HospitalizationMenu {
             System.out.println("4. Find current hospitalization by patient AMKA");
             System.out.println("5. Admit new hospitalization");
             System.out.println("6. Update hospitalization (single field)");
-            System.out.println("7. Discharge hospitalization");
+            System.out.println("7. Discharge hospitalizations");
             System.out.println("8. Delete hospitalization");
+            System.out.println("9. Transfer patients to another department");
             System.out.println("0. Back");
             System.out.print("Choice: ");
 
@@ -54,6 +59,7 @@ public class HospitalizationMenu {
                 case 6 -> updateHospitalization();
                 case 7 -> discharge();
                 case 8 -> deleteHospitalization();
+                case 9 -> transfer();
                 case 0 -> { return; }
                 default -> System.out.println("Invalid choice.");
             }
@@ -61,14 +67,10 @@ public class HospitalizationMenu {
     }
 
     private void listAll() {
-        try {
-            List<Hospitalization> list = hospitalizationDAO.findAll(connection);
-            if (list.isEmpty()) {
+        try (Connection connection = dataSource.getConnection()) {
+            int count = hospitalizationDAO.streamAll(System.out::println, connection);
+            if (count == 0) {
                 System.out.println("No hospitalizations found.");
-                return;
-            }
-            for (Hospitalization h : list) {
-                System.out.println(h);
             }
         } catch (SQLException e) {
             System.out.println("Database error while listing hospitalizations: " + e.getMessage());
@@ -76,7 +78,7 @@ public class HospitalizationMenu {
     }
 
     private void listCurrent() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             List<Hospitalization> list = hospitalizationDAO.findCurrentHospitalizations(connection);
             if (list.isEmpty()) {
                 System.out.println("No currently admitted patients.");
@@ -91,7 +93,7 @@ public class HospitalizationMenu {
     }
 
     private void listByPatientId() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             System.out.print("Patient ID: ");
             int patientId = Integer.parseInt(scanner.nextLine());
 
@@ -111,7 +113,7 @@ public class HospitalizationMenu {
     }
 
     private void findCurrentByAmka() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             System.out.print("Patient AMKA: ");
             String amka = scanner.nextLine();
 
@@ -129,7 +131,7 @@ public class HospitalizationMenu {
     }
 
     private void admit() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             System.out.print("Patient ID: ");
             int patientId = Integer.parseInt(scanner.nextLine());
 
@@ -143,7 +145,7 @@ public class HospitalizationMenu {
                     ? LocalDateTime.now()
                     : LocalDateTime.parse(dtStr);
 
-            System.out.print("Bed number: ");
+            System.out.print("Bed number (empty to assign the next free bed): ");
             String bedNumber = scanner.nextLine();
 
             System.out.print("Reason: ");
@@ -158,7 +160,8 @@ public class HospitalizationMenu {
 
             hospitalizationDAO.insert(h, connection);
 
-            System.out.println("Hospitalization inserted with ID = " + h.getHospitalizationId());
+            System.out.println("Hospitalization inserted with ID = " + h.getHospitalizationId()
+                    + ", bed " + h.getBedNumber());
         } catch (SQLException e) {
             System.out.println("Database error while admitting: " + e.getMessage());
         } catch (NumberFormatException e) {
@@ -169,7 +172,7 @@ public class HospitalizationMenu {
     }
 
     private void updateHospitalization() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             System.out.print("Enter hospitalization ID to update: ");
             int id = Integer.parseInt(scanner.nextLine());
 
@@ -179,6 +182,8 @@ public class HospitalizationMenu {
                 return;
             }
 
+            Map<String, Object> changes = new LinkedHashMap<>();
+
             while (true) {
                 System.out.println("\nChoose field to update:");
                 System.out.println("1. Patient ID");
@@ -187,7 +192,7 @@ public class HospitalizationMenu {
                 System.out.println("4. Discharge datetime");
                 System.out.println("5. Bed number");
                 System.out.println("6. Reason");
-                System.out.println("0. Finish");
+                System.out.println("0. Save and finish");
                 System.out.print("Choice: ");
 
                 String input = scanner.nextLine();
@@ -200,7 +205,13 @@ public class HospitalizationMenu {
                 }
 
                 if (choice == 0) {
-                    System.out.println("Done updating.");
+                    if (changes.isEmpty()) {
+                        System.out.println("Nothing to update.");
+                        return;
+                    }
+                    int rows = hospitalizationDAO.updateHospitalizationFields(id, changes, connection);
+                    if (rows == 0) System.out.println("Nothing updated.");
+                    else System.out.println(changes.size() + " field(s) updated successfully.");
                     return;
                 }
 
@@ -248,9 +259,7 @@ public class HospitalizationMenu {
                     }
                 }
 
-                int rows = hospitalizationDAO.updateHospitalizationField(id, field, value, connection);
-                if (rows == 0) System.out.println("Nothing updated.");
-                else System.out.println("Updated successfully.");
+                changes.put(field, value);
             }
         } catch (SQLException e) {
             System.out.println("Database error while updating hospitalization: " + e.getMessage());
@@ -262,15 +271,20 @@ public class HospitalizationMenu {
     }
 
     private void discharge() {
-        try {
-            System.out.print("Enter hospitalization ID to discharge: ");
-            int id = Integer.parseInt(scanner.nextLine());
+        try (Connection connection = dataSource.getConnection()) {
+            System.out.print("Enter hospitalization IDs to discharge (comma separated): ");
+            List<Integer> ids = new ArrayList<>();
+            for (String part : scanner.nextLine().split(",")) {
+                if (!part.isBlank()) {
+                    ids.add(Integer.parseInt(part.trim()));
+                }
+            }
 
-            int rows = hospitalizationDAO.discharge(id, connection);
-            if (rows == 0) {
+            List<Integer> discharged = hospitalizationDAO.dischargeAll(ids, connection);
+            if (discharged.isEmpty()) {
                 System.out.println("Nothing updated (maybe already discharged or not found).");
             } else {
-                System.out.println("Patient discharged.");
+                System.out.println("Discharged hospitalizations: " + discharged);
             }
         } catch (SQLException e) {
             System.out.println("Database error while discharging: " + e.getMessage());
@@ -279,8 +293,45 @@ public class HospitalizationMenu {
         }
     }
 
+    private void transfer() {
+        try (Connection connection = dataSource.getConnection()) {
+            System.out.print("From department ID: ");
+            int fromDept = Integer.parseInt(scanner.nextLine());
+            System.out.print("To department ID: ");
+            int toDept = Integer.parseInt(scanner.nextLine());
+
+            Map<String, String> bedMapping = new LinkedHashMap<>();
+            System.out.println("Enter bed moves as oldBed=newBed, one per line (empty line to finish):");
+            while (true) {
+                String line = scanner.nextLine();
+                if (line.isBlank()) {
+                    break;
+                }
+                String[] beds = line.split("=");
+                if (beds.length != 2 || beds[0].isBlank() || beds[1].isBlank()) {
+                    System.out.println("Expected oldBed=newBed, line ignored.");
+                    continue;
+                }
+                bedMapping.put(beds[0].trim(), beds[1].trim());
+            }
+
+            List<Integer> moved = hospitalizationDAO.transferAll(fromDept, toDept, bedMapping, connection);
+            if (moved.isEmpty()) {
+                System.out.println("Nobody was transferred (no open hospitalization in those beds).");
+            } else {
+                System.out.println("Transferred hospitalizations: " + moved);
+            }
+        } catch (SQLException e) {
+            System.out.println("Database error while transferring (nothing was moved): " + e.getMessage());
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid number format.");
+        } catch (IllegalArgumentException e) {
+            System.out.println("Transfer refused: " + e.getMessage());
+        }
+    }
+
     private void deleteHospitalization() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             System.out.print("Enter hospitalization ID to delete: ");
             int id = Integer.parseInt(scanner.nextLine());
 
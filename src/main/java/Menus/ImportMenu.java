@@ -0,0 +1,94 @@
+package Menus;
+
+import Imports.CsvImporter;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Scanner;
+
+public class ImportMenu {
+
+    private final CsvImporter importer;
+    private final DataSource dataSource;
+    private final Scanner scanner;
+
+    public ImportMenu(DataSource dataSource, Scanner scanner) {
+        this.dataSource = dataSource;
+        this.scanner = scanner;
+        this.importer = new CsvImporter();
+    }
+
+    public void show() {
+        while (true) {
+            System.out.println("\n=== CSV IMPORT MENU ===");
+            System.out.println("1. Import patients");
+            System.out.println("2. Import appointments");
+            System.out.println("3. Import medical records");
+            System.out.println("4. Sync patients from registry feed (update existing by AMKA)");
+            System.out.println("0. Back");
+            System.out.print("Choice: ");
+
+            String input = scanner.nextLine();
+            int choice;
+            try {
+                choice = Integer.parseInt(input);
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid number.");
+                continue;
+            }
+
+            switch (choice) {
+                case 1, 2, 3, 4 -> importFile(choice);
+                case 0 -> { return; }
+                default -> System.out.println("Invalid choice.");
+            }
+        }
+    }
+
+    private void importFile(int kind) {
+        System.out.print("CSV file path: ");
+        String csvStr = scanner.nextLine();
+        if (csvStr.isBlank()) {
+            System.out.println("No file given.");
+            return;
+        }
+        Path csv = Path.of(csvStr.trim());
+        Path defaultRejects = Path.of(csv + ".rejects.csv");
+
+        System.out.print("Rejected rows file (empty for " + defaultRejects + "): ");
+        String rejStr = scanner.nextLine();
+        Path rejects = rejStr.isBlank() ? defaultRejects : Path.of(rejStr.trim());
+
+        try (Connection connection = dataSource.getConnection()) {
+            if (kind == 4) {
+                CsvImporter.SyncResult result = importer.syncPatients(csv, rejects, connection);
+                System.out.println("Sync finished: " + result);
+                if (result.rejected() > 0) {
+                    System.out.println("Rejected rows written to " + rejects);
+                }
+                return;
+            }
+            CsvImporter.ImportResult result = switch (kind) {
+                case 1 -> importer.importPatients(csv, rejects, connection);
+                case 2 -> importer.importAppointments(csv, rejects, connection);
+                default -> importer.importMedicalRecords(csv, rejects, connection);
+            };
+            System.out.println("Import finished: " + result);
+            if (result.rejected() > 0) {
+                System.out.println("Rejected rows written to " + rejects);
+            }
+        } catch (SQLException e) {
+            System.out.println("Database error during import (" + rollbackNote(kind) + "): " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println("File error during import (" + rollbackNote(kind) + "): " + e.getMessage());
+        }
+    }
+
+    // the registry sync commits batch by batch; the plain imports are all-or-nothing
+    private static String rollbackNote(int kind) {
+        return kind == 4 ? "batches finished before the error were kept" : "nothing was imported";
+    }
+}
@@ -1,10 +1,21 @@
-package Menus
+package Menus;
 
+import Beds.OccupancyTracker;
+import DAOs.DepartmentDAO;
+import DAOs.DoctorDAO;
+import DAOs.HospitalizationDAO;
+
+import javax.sql.DataSource;
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
 import java.util.Scanner;
 
 public class MainMenu {
 
+    // how long a missed occupancy notification can go unnoticed
+    private static final Duration OCCUPANCY_RESYNC_INTERVAL = Duration.ofMinutes(5);
+
     private final PatientMenu patientMenu;
     private final DoctorMenu doctorMenu;
     private final DepartmentMenu departmentMenu;
@@ -12,22 +23,31 @@ public class MainMenu {
     private final AppointmentMenu appointmentMenu;
     private final MedicalRecordMenu medicalRecordMenu;
     private final ReportsMenu reportsMenu;
-    private final Connection connection;
+    private final ImportMenu importMenu;
+    private final ExportMenu exportMenu;
+    private final OccupancyTracker occupancyTracker;
+    private final DataSource dataSource;
     private final Scanner scanner;
 
-    public MainMenu(Connection connection, Scanner scanner) {
-        this.connection = connection;
+    public MainMenu(DataSource dataSource, Scanner scanner) {
+        this.dataSource = dataSource;
         this.scanner = scanner;
-        this.patientMenu = new PatientMenu(connection, scanner);
-        this.doctorMenu = new DoctorMenu(connection, scanner);
-        this.departmentMenu = new DepartmentMenu(connection, scanner);
-        this.hospitalizationMenu = new HospitalizationMenu(connection, scanner);
-        this.appointmentMenu = new AppointmentMenu(connection, scanner);
-        this.medicalRecordMenu = new MedicalRecordMenu(connection, scanner);
-        this.reportsMenu = new ReportsMenu(connection, scanner);
+        this.patientMenu = new PatientMenu(dataSource, scanner);
+        this.doctorMenu = new DoctorMenu(dataSource, scanner);
+        this.departmentMenu = new DepartmentMenu(dataSource, scanner);
+        this.hospitalizationMenu = new HospitalizationMenu(dataSource, scanner);
+        this.appointmentMenu = new AppointmentMenu(dataSource, scanner);
+        this.medicalRecordMenu = new MedicalRecordMenu(dataSource, scanner);
+        this.reportsMenu = new ReportsMenu(dataSource, scanner);
+        this.importMenu = new ImportMenu(dataSource, scanner);
+        this.exportMenu = new ExportMenu(dataSource, scanner);
+        this.occupancyTracker = new OccupancyTracker(dataSource, OCCUPANCY_RESYNC_INTERVAL);
+        HospitalizationDAO.useOccupancyTracker(occupancyTracker);
     }
 
     public void start() {
+        preloadReferenceData();
+
         while (true) {
             System.out.println("=== MAIN MENU ===");
             System.out.println("1. Patients");
@@ -37,6 +57,8 @@ public class MainMenu {
             System.out.println("5. Appointments");
             System.out.println("6. Medical Records");
             System.out.println("7. Reports & Analytics");
+            System.out.println("8. Import from CSV");
+            System.out.println("9. Export to CSV");
             System.out.println("0. Exit");
             System.out.print("Choice: ");
 
@@ -50,7 +72,11 @@ public class MainMenu {
                 case 5 -> appointmentMenu.show();
                 case 6 -> medicalRecordMenu.show();
                 case 7 -> reportsMenu.show();
+                case 8 -> importMenu.show();
+                case 9 -> exportMenu.show();
                 case 0 -> {
+                    medicalRecordMenu.close();
+                    occupancyTracker.close();
                     System.out.println("Goodbye!");
                     return;
                 }
@@ -58,4 +84,14 @@ public class MainMenu {
             }
         }
     }
+
+    private void preloadReferenceData() {
+        try (Connection connection = dataSource.getConnection()) {
+            new DepartmentDAO().preloadCache(connection);
+            new DoctorDAO().preloadCache(connection);
+            new HospitalizationDAO().preloadBeds(connection);
+        } catch (SQLException e) {
+            System.out.println("Could not preload departments, doctors and beds: " + e.getMessage());
+        }
+    }
 }
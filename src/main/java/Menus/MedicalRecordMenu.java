@@ -1,23 +1,34 @@
 package Menus;
 
 import DAOs.MedicalRecordDAO;
+import DAOs.MedicalRecordWriter;
 import Entities.MedicalRecord;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class MedicalRecordMenu {
 
+    private static final int WRITER_QUEUE_CAPACITY = 1000;
+    private static final int WRITER_BATCH_SIZE = 100;
+    private static final long WRITER_FLUSH_INTERVAL_MILLIS = 200;
+
     private final MedicalRecordDAO medicalRecordDAO;
-    private final Connection connection;
+    private final DataSource dataSource;
     private final Scanner scanner;
+    private MedicalRecordWriter writer;
 
-    public MedicalRecordMenu(Connection connection, Scanner scanner) {
-        this.connection = connection;
+    public MedicalRecordMenu(DataSource dataSource, Scanner scanner) {
+        this.dataSource = dataSource;
         this.scanner = scanner;
         this.medicalRecordDAO = new MedicalRecordDAO();
     }
@@ -31,6 +42,7 @@ public class MedicalRecordMenu {
             System.out.println("4. Update medical record (field by field)");
             System.out.println("5. Delete medical record");
             System.out.println("6. Find record by ID");
+            System.out.println("7. Ward rounds: quick entry (saved in the background)");
             System.out.println("0. Back");
             System.out.print("Choice: ");
 
@@ -50,6 +62,7 @@ public class MedicalRecordMenu {
                 case 4 -> updateRecord();
                 case 5 -> deleteRecord();
                 case 6 -> findById();
+                case 7 -> wardRounds();
                 case 0 -> { return; }
                 default -> System.out.println("Invalid choice.");
             }
@@ -57,14 +70,10 @@ public class MedicalRecordMenu {
     }
 
     private void listAll() {
-        try {
-            List<MedicalRecord> list = medicalRecordDAO.findAll(connection);
-            if (list.isEmpty()) {
+        try (Connection connection = dataSource.getConnection()) {
+            int count = medicalRecordDAO.streamAll(System.out::println, connection);
+            if (count == 0) {
                 System.out.println("No medical records found.");
-                return;
-            }
-            for (MedicalRecord mr : list) {
-                System.out.println(mr);
             }
         } catch (SQLException e) {
             System.out.println("Database error while listing medical records: " + e.getMessage());
@@ -72,7 +81,7 @@ public class MedicalRecordMenu {
     }
 
     private void listByPatient() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             System.out.print("Patient ID: ");
             int patientId = Integer.parseInt(scanner.nextLine());
 
@@ -92,7 +101,7 @@ public class MedicalRecordMenu {
     }
 
     private void addRecord() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             System.out.print("Patient ID: ");
             int patientId = Integer.parseInt(scanner.nextLine());
 
@@ -129,8 +138,67 @@ public class MedicalRecordMenu {
         }
     }
 
-    private void updateRecord() {
+    /** Records are queued to the background writer as they are typed; the ids are reported at the end. */
+    private void wardRounds() {
         try {
+            System.out.print("Doctor ID for this round (empty for null): ");
+            String docStr = scanner.nextLine();
+            Integer doctorId = docStr.isBlank() ? null : Integer.parseInt(docStr);
+
+            if (writer == null) {
+                writer = new MedicalRecordWriter(dataSource, WRITER_QUEUE_CAPACITY, WRITER_BATCH_SIZE,
+                        WRITER_FLUSH_INTERVAL_MILLIS);
+            }
+            Map<Integer, CompletableFuture<Integer>> submitted = new LinkedHashMap<>();
+            while (true) {
+                System.out.print("\nPatient ID (empty to finish): ");
+                String patientStr = scanner.nextLine();
+                if (patientStr.isBlank()) {
+                    break;
+                }
+                try {
+                    MedicalRecord mr = new MedicalRecord();
+                    mr.setPatientId(Integer.parseInt(patientStr));
+                    mr.setDoctorId(doctorId);
+                    System.out.print("Diagnosis: ");
+                    mr.setDiagnosis(scanner.nextLine());
+                    System.out.print("Treatment: ");
+                    mr.setTreatment(scanner.nextLine());
+                    System.out.print("Notes (optional): ");
+                    mr.setNotes(scanner.nextLine());
+                    submitted.put(submitted.size() + 1, writer.submit(mr));
+                } catch (NumberFormatException e) {
+                    System.out.println("Invalid number format, record skipped.");
+                } catch (IllegalArgumentException e) {
+                    System.out.println("Invalid data, record skipped: " + e.getMessage());
+                }
+            }
+
+            for (Map.Entry<Integer, CompletableFuture<Integer>> entry : submitted.entrySet()) {
+                try {
+                    System.out.println("Record " + entry.getKey() + " saved with ID = " + entry.getValue().join());
+                } catch (CompletionException e) {
+                    System.out.println("Record " + entry.getKey() + " was not saved: " + e.getCause().getMessage());
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Invalid number format.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Interrupted while queuing records.");
+        }
+    }
+
+    /** Writes out any records still queued by ward rounds. */
+    public void close() {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    private void updateRecord() {
+        try (Connection connection = dataSource.getConnection()) {
             System.out.print("Enter record ID to update: ");
             int id = Integer.parseInt(scanner.nextLine());
 
@@ -140,6 +208,8 @@ public class MedicalRecordMenu {
                 return;
             }
 
+            Map<String, Object> changes = new LinkedHashMap<>();
+
             while (true) {
                 System.out.println("\nChoose field to update:");
                 System.out.println("1. Patient ID");
@@ -148,7 +218,7 @@ public class MedicalRecordMenu {
                 System.out.println("4. Diagnosis");
                 System.out.println("5. Treatment");
                 System.out.println("6. Notes");
-                System.out.println("0. Finish");
+                System.out.println("0. Save and finish");
                 System.out.print("Choice: ");
 
                 String input = scanner.nextLine();
@@ -161,7 +231,13 @@ public class MedicalRecordMenu {
                 }
 
                 if (choice == 0) {
-                    System.out.println("Done updating.");
+                    if (changes.isEmpty()) {
+                        System.out.println("Nothing to update.");
+                        return;
+                    }
+                    int rows = medicalRecordDAO.updateMedicalRecordFields(id, changes, connection);
+                    if (rows == 0) System.out.println("Nothing updated.");
+                    else System.out.println(changes.size() + " field(s) updated successfully.");
                     return;
                 }
 
@@ -208,12 +284,7 @@ public class MedicalRecordMenu {
                     }
                 }
 
-                int rows = medicalRecordDAO.updateMedicalRecordField(id, field, value, connection);
-                if (rows == 0) {
-                    System.out.println("Nothing updated.");
-                } else {
-                    System.out.println("Field updated successfully.");
-                }
+                changes.put(field, value);
             }
         } catch (SQLException e) {
             System.out.println("Database error while updating record: " + e.getMessage());
@@ -225,7 +296,7 @@ public class MedicalRecordMenu {
     }
 
     private void deleteRecord() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             System.out.print("Enter record ID to delete: ");
             int id = Integer.parseInt(scanner.nextLine());
 
@@ -243,7 +314,7 @@ public class MedicalRecordMenu {
     }
 
     private void findById() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             System.out.print("Enter record ID: ");
             int id = Integer.parseInt(scanner.nextLine());
 
@@ -3,20 +3,23 @@ package Menus;
 import DAOs.PatientDAO;
 import Entities.Patient;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.Date;
 import java.sql.SQLException;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
 public class PatientMenu {
 
     private final PatientDAO patientDAO;
-    private final Connection connection;
+    private final DataSource dataSource;
     private final Scanner scanner;
 
-    public PatientMenu(Connection connection, Scanner scanner) {
-        this.connection = connection;
+    public PatientMenu(DataSource dataSource, Scanner scanner) {
+        this.dataSource = dataSource;
         this.scanner = scanner;
         this.patientDAO = new PatientDAO();
     }
@@ -58,14 +61,10 @@ public class PatientMenu {
     }
 
     private void listAllPatients() {
-        try {
-            List<Patient> patients = patientDAO.findAll(connection);
-            if (patients.isEmpty()) {
+        try (Connection connection = dataSource.getConnection()) {
+            int count = patientDAO.streamAll(System.out::print, connection);
+            if (count == 0) {
                 System.out.println("No patients found.");
-                return;
-            }
-            for (Patient p : patients) {
-                System.out.print(p);
             }
         } catch (SQLException e) {
             System.out.println("Database error while listing patients: " + e.getMessage());
@@ -73,7 +72,7 @@ public class PatientMenu {
     }
 
     private void addPatient() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             System.out.print("First name: ");
             String firstName = scanner.nextLine();
 
@@ -113,7 +112,7 @@ public class PatientMenu {
     }
 
     private void updatePatient() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             System.out.print("Enter patient ID to update: ");
             int id = Integer.parseInt(scanner.nextLine());
 
@@ -125,6 +124,8 @@ public class PatientMenu {
 
             System.out.println("Updating patient: " + existing.getFirstName() + " " + existing.getLastName());
 
+            Map<String, Object> changes = new LinkedHashMap<>();
+
             while (true) {
                 System.out.println("\nChoose field to update:");
                 System.out.println("1. First name");
@@ -133,7 +134,7 @@ public class PatientMenu {
                 System.out.println("4. Gender");
                 System.out.println("5. Phone");
                 System.out.println("6. AMKA");
-                System.out.println("0. Finish");
+                System.out.println("0. Save and finish");
                 System.out.print("Choice: ");
 
                 String input = scanner.nextLine();
@@ -146,7 +147,13 @@ public class PatientMenu {
                 }
 
                 if (choice == 0) {
-                    System.out.println("Done updating.");
+                    if (changes.isEmpty()) {
+                        System.out.println("Nothing to update.");
+                        return;
+                    }
+                    int rows = patientDAO.updatePatientFields(id, changes, connection);
+                    if (rows == 0) System.out.println("Nothing updated.");
+                    else System.out.println(changes.size() + " field(s) updated successfully.");
                     return;
                 }
 
@@ -193,12 +200,7 @@ public class PatientMenu {
                     }
                 }
 
-                int rows = patientDAO.updatePatientField(id, field, value, connection);
-                if (rows == 0) {
-                    System.out.println("Nothing updated.");
-                } else {
-                    System.out.println("Field updated successfully.");
-                }
+                changes.put(field, value);
             }
 
         } catch (SQLException e) {
@@ -211,7 +213,7 @@ public class PatientMenu {
     }
 
     private void deletePatient() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             System.out.print("Enter patient ID to delete: ");
             int id = Integer.parseInt(scanner.nextLine());
             int rows = patientDAO.deletePatientById(id, connection);
@@ -228,7 +230,7 @@ public class PatientMenu {
     }
 
     private void findPatientById() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             System.out.print("Enter patient ID: ");
             int id = Integer.parseInt(scanner.nextLine());
 
@@ -246,7 +248,7 @@ public class PatientMenu {
     }
 
     private void findPatientByAmka() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             System.out.print("Enter AMKA: ");
             String amka = scanner.nextLine();
 
@@ -262,7 +264,7 @@ public class PatientMenu {
     }
 
     private void countPatients() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             int count = patientDAO.numberOfPatients(connection);
             System.out.println("Total patients: " + count);
         } catch (SQLException e) {
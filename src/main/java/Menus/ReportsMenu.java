@@ -1,24 +1,53 @@
 package Menus;
 
-import DAOs.ReportsAnalyticsDAO;
+import Analytics.Dashboard;
+import Analytics.HospitalizationColumns;
+import Analytics.HospitalizationSnapshot;
+import DAOs.AdmissionRollupDAO;
+import DAOs.DepartmentDAO;
+import DAOs.DoctorDAO;
+import DAOs.HospitalizationDAO;
+import DAOs.PatientDAO;
+import DAOs.ReportRefresher;
+import DAOs.ReportSummaryDAO;
+import Database.ConnectionPool;
+import Database.StatementCache;
+import Entities.AdmissionMatrix;
+import Entities.Department;
+import Entities.DepartmentSummary;
 import Entities.Doctor;
+import Entities.ReportSnapshot;
 
+import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
 
 public class ReportsMenu {
 
-    private final ReportsAnalyticsDAO reportsDAO;
-    private final Connection connection;
+    // out of a pool of 10, one of them held by the occupancy listener, so interactive work always gets one
+    private static final int DASHBOARD_CONNECTIONS = 8;
+
+    private final ReportSummaryDAO reportsDAO;
+    private final AdmissionRollupDAO rollupDAO = new AdmissionRollupDAO();
+    private final ReportRefresher refresher;
+    private final HospitalizationSnapshot snapshot = new HospitalizationSnapshot();
+    private final Dashboard dashboard;
+    private final DataSource dataSource;
     private final Scanner scanner;
 
-    public ReportsMenu(Connection connection, Scanner scanner) {
-        this.connection = connection;
+    public ReportsMenu(DataSource dataSource, Scanner scanner) {
+        this.dataSource = dataSource;
         this.scanner = scanner;
-        this.reportsDAO = new ReportsAnalyticsDAO();
+        this.reportsDAO = new ReportSummaryDAO();
+        this.refresher = new ReportRefresher(dataSource);
+        this.dashboard = new Dashboard(dataSource, DASHBOARD_CONNECTIONS);
     }
 
     public void show() {
@@ -30,6 +59,12 @@ public class ReportsMenu {
             System.out.println("4. Bed occupancy rate per department");
             System.out.println("5. Average age of admitted patients");
             System.out.println("6. Admissions per department per year");
+            System.out.println("7. System statistics (caches, admission locks)");
+            System.out.println("8. Rebuild report summaries now");
+            System.out.println("9. Department figures for any period (in-memory snapshot)");
+            System.out.println("10. Hospital dashboard (all reports at once)");
+            System.out.println("11. Admissions and discharges by day, week, month or year");
+            System.out.println("12. Backfill admissions rollup from history");
             System.out.println("0. Back");
             System.out.print("Choice: ");
 
@@ -49,15 +84,206 @@ public class ReportsMenu {
                 case 4 -> bedOccupancy();
                 case 5 -> avgAgeAdmitted();
                 case 6 -> admissionsPerYear();
+                case 7 -> systemStats();
+                case 8 -> rebuildSummaries();
+                case 9 -> departmentFigures();
+                case 10 -> showDashboard();
+                case 11 -> admissionsByPeriod();
+                case 12 -> backfillRollup();
                 case 0 -> { return; }
                 default -> System.out.println("Invalid choice.");
             }
         }
     }
 
-    private void avgLengthOfStay() {
+    private void systemStats() {
+        System.out.println("\nPatient cache:     " + PatientDAO.cacheStats());
+        System.out.println("Doctor cache:      " + DoctorDAO.cacheStats());
+        System.out.println("Department cache:  " + DepartmentDAO.cacheStats());
+        System.out.println("Admission locks:   " + HospitalizationDAO.admissionLockStats());
+        System.out.println("Occupancy tracker: " + (HospitalizationDAO.occupancyStats() == null ? "not started" : HospitalizationDAO.occupancyStats()));
+        if (dataSource instanceof ConnectionPool pool) {
+            System.out.println("Connections:       " + pool.getActiveConnections() + " active, "
+                    + pool.getIdleConnections() + " idle");
+            StatementCache.Stats statements = pool.getStatementCacheStats();
+            System.out.printf("Statement cache:   %d hits, %d misses, %d evictions (%.1f%% hit rate)%n",
+                    statements.hits(), statements.misses(), statements.evictions(), statements.hitRate() * 100);
+        }
+        System.out.println("Report summaries:  last rebuilt " + (refresher.lastRebuild() == null ? "not since startup" : refresher.lastRebuild())
+                + (refresher.lastError() == null ? "" : ", last attempt failed: " + refresher.lastError()));
+    }
+
+    private void rebuildSummaries() {
         try {
-            HashMap<String, Integer> map = reportsDAO.averageLengthOfStayPerDepartment(connection);
+            refresher.rebuildNow();
+            System.out.println("Report summaries rebuilt at " + refresher.lastRebuild() + ".");
+        } catch (SQLException e) {
+            System.out.println("Database error while rebuilding report summaries: " + e.getMessage());
+        }
+    }
+
+    private void showDashboard() {
+        try {
+            Dashboard.Snapshot d = dashboard.take();
+            System.out.println("\n=== HOSPITAL DASHBOARD (" + d.takenAt() + ") ===");
+
+            printPart("Average length of stay", d.averageLengthOfStay());
+            if (d.averageLengthOfStay().value() != null) {
+                d.averageLengthOfStay().value().forEach((name, days) -> System.out.println("    " + name + ": " + days + " days"));
+            }
+            printPart("Doctors by patients", d.doctorPatientCounts());
+            if (d.doctorPatientCounts().value() != null) {
+                d.doctorPatientCounts().value().forEach((doc, count) ->
+                        System.out.println("    " + doc.getFirstName() + " " + doc.getLastName() + ": " + count));
+            }
+            printPart("COVID cases", d.covidCases());
+            if (d.covidCases().value() != null) {
+                System.out.println("    " + d.covidCases().value());
+            }
+            printPart("Bed occupancy", d.bedOccupancy());
+            if (d.bedOccupancy().value() != null) {
+                d.bedOccupancy().value().forEach((name, rate) -> System.out.printf("    %s: %.2f%%%n", name, rate * 100));
+            }
+            printPart("Average age of admitted", d.averageAgeOfAdmitted());
+            if (d.averageAgeOfAdmitted().value() != null) {
+                System.out.printf("    %.1f years%n", d.averageAgeOfAdmitted().value());
+            }
+            printPart("Admissions this year", d.admissionsThisYear());
+            if (d.admissionsThisYear().value() != null) {
+                d.admissionsThisYear().value().forEach((name, count) -> System.out.println("    " + name + ": " + count));
+            }
+            for (Map.Entry<String, Dashboard.Part<DepartmentSummary>> e : d.departments().entrySet()) {
+                printPart("Department " + e.getKey(), e.getValue());
+                DepartmentSummary summary = e.getValue().value();
+                if (summary != null) {
+                    System.out.printf("    occupancy %d / %s, %d doctors%n", summary.occupancy(),
+                            summary.department().getCapacity(), summary.doctorCount());
+                }
+            }
+            System.out.printf("%nTotal %d ms for %d queries (%d ms if run one after another)%n",
+                    d.elapsed().toMillis(), 6 + d.departments().size(), d.sequentialTime().toMillis());
+        } catch (SQLException e) {
+            System.out.println("Database error while listing departments: " + e.getMessage());
+        }
+    }
+
+    private static void printPart(String title, Dashboard.Part<?> part) {
+        System.out.println("- " + title + " [" + part + "]");
+    }
+
+    private void departmentFigures() {
+        try (Connection connection = dataSource.getConnection()) {
+            System.out.print("From date (yyyy-MM-dd, empty for start of this year): ");
+            String fromStr = scanner.nextLine();
+            LocalDateTime from = fromStr.isBlank()
+                    ? LocalDate.now().withDayOfYear(1).atStartOfDay()
+                    : LocalDate.parse(fromStr).atStartOfDay();
+            System.out.print("To date, inclusive (yyyy-MM-dd, empty for today): ");
+            String toStr = scanner.nextLine();
+            LocalDateTime to = (toStr.isBlank() ? LocalDate.now() : LocalDate.parse(toStr)).plusDays(1).atStartOfDay();
+
+            long started = System.nanoTime();
+            HospitalizationColumns columns = snapshot.refresh(connection);
+            long refreshed = System.nanoTime();
+            List<HospitalizationColumns.DepartmentFigures> figures = columns.summarize(from, to);
+            long summarized = System.nanoTime();
+
+            Map<Integer, String> names = new HashMap<>();
+            for (Department d : new DepartmentDAO().findAll(connection)) {
+                names.put(d.getDepartmentId(), d.getName());
+            }
+            System.out.printf("%n%-25s %10s %9s %10s %9s %9s%n",
+                    "Department", "Admissions", "Patients", "Discharges", "Avg stay", "Occupied");
+            for (HospitalizationColumns.DepartmentFigures f : figures) {
+                System.out.printf("%-25s %10d %9d %10d %8.1fd %9d%n",
+                        names.getOrDefault(f.departmentId(), "#" + f.departmentId()),
+                        f.admissions(), f.patients(), f.discharges(), f.averageStayDays(), f.occupied());
+            }
+            System.out.printf("(%d stays as of %s, edits to closed stays as of %s; refresh %.1f ms, aggregation %.1f ms)%n",
+                    columns.size(), snapshot.refreshedAt(), snapshot.loadedAt(),
+                    (refreshed - started) / 1_000_000.0, (summarized - refreshed) / 1_000_000.0);
+        } catch (SQLException e) {
+            System.out.println("Database error while refreshing the snapshot: " + e.getMessage());
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid date format.");
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid data: " + e.getMessage());
+        }
+    }
+
+    private void admissionsByPeriod() {
+        try (Connection connection = dataSource.getConnection()) {
+            System.out.print("From date (yyyy-MM-dd, empty for start of this year): ");
+            String fromStr = scanner.nextLine();
+            LocalDate from = fromStr.isBlank() ? LocalDate.now().withDayOfYear(1) : LocalDate.parse(fromStr);
+            System.out.print("To date, inclusive (yyyy-MM-dd, empty for today): ");
+            String toStr = scanner.nextLine();
+            LocalDate to = (toStr.isBlank() ? LocalDate.now() : LocalDate.parse(toStr)).plusDays(1);
+            System.out.print("Group by (day/week/month/year, empty for month): ");
+            String byStr = scanner.nextLine();
+            AdmissionRollupDAO.Granularity granularity = byStr.isBlank()
+                    ? AdmissionRollupDAO.Granularity.MONTH
+                    : AdmissionRollupDAO.Granularity.valueOf(byStr.strip().toUpperCase());
+
+            long started = System.nanoTime();
+            AdmissionMatrix matrix = rollupDAO.matrix(from, to, granularity, connection);
+            long queried = System.nanoTime();
+            if (matrix.departmentIds().isEmpty()) {
+                System.out.println("No admissions or discharges in that range.");
+                return;
+            }
+
+            Map<Integer, String> names = new HashMap<>();
+            for (Department d : new DepartmentDAO().findAll(connection)) {
+                names.put(d.getDepartmentId(), d.getName());
+            }
+            System.out.printf("%nAdmissions/discharges per department (first day of each %s):%n",
+                    granularity.name().toLowerCase());
+            System.out.printf("%-12s", "Period");
+            for (int departmentId : matrix.departmentIds()) {
+                String name = names.getOrDefault(departmentId, "#" + departmentId);
+                System.out.printf(" %15s", name.length() > 15 ? name.substring(0, 15) : name);
+            }
+            System.out.println();
+            for (int p = 0; p < matrix.periods().size(); p++) {
+                System.out.printf("%-12s", matrix.periods().get(p));
+                for (int d = 0; d < matrix.departmentIds().size(); d++) {
+                    System.out.printf(" %15s", matrix.admissions()[p][d] + "/" + matrix.discharges()[p][d]);
+                }
+                System.out.println();
+            }
+            System.out.printf("Total: %d admissions, %d discharges (query %.1f ms)%n",
+                    matrix.totalAdmissions(), matrix.totalDischarges(), (queried - started) / 1_000_000.0);
+        } catch (SQLException e) {
+            System.out.println("Database error while fetching admissions: " + e.getMessage());
+        } catch (DateTimeParseException e) {
+            System.out.println("Invalid date format.");
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid data: " + e.getMessage());
+        }
+    }
+
+    private void backfillRollup() {
+        try (Connection connection = dataSource.getConnection()) {
+            long started = System.nanoTime();
+            long rows = rollupDAO.backfillAll(connection);
+            System.out.printf("Admissions rollup rebuilt: %d department-days in %.1f s.%n",
+                    rows, (System.nanoTime() - started) / 1_000_000_000.0);
+        } catch (SQLException e) {
+            System.out.println("Database error while backfilling the admissions rollup: " + e.getMessage());
+        }
+    }
+
+    private static void printAsOf(ReportSnapshot<?> snapshot) {
+        if (snapshot.asOf() != null) {
+            System.out.println("(as of " + snapshot.asOf() + ")");
+        }
+    }
+
+    private void avgLengthOfStay() {
+        try (Connection connection = dataSource.getConnection()) {
+            ReportSnapshot<HashMap<String, Integer>> report = reportsDAO.averageLengthOfStayPerDepartment(connection);
+            HashMap<String, Integer> map = report.data();
             if (map.isEmpty()) {
                 System.out.println("No data.");
                 return;
@@ -66,14 +292,16 @@ public class ReportsMenu {
             for (Map.Entry<String, Integer> e : map.entrySet()) {
                 System.out.println("- " + e.getKey() + ": " + e.getValue() + " days");
             }
+            printAsOf(report);
         } catch (SQLException e) {
             System.out.println("Database error while fetching report: " + e.getMessage());
         }
     }
 
     private void doctorPatientCounts() {
-        try {
-            HashMap<Doctor, Integer> map = reportsDAO.doctorPatientCounts(connection);
+        try (Connection connection = dataSource.getConnection()) {
+            ReportSnapshot<HashMap<Doctor, Integer>> report = reportsDAO.doctorPatientCounts(connection);
+            HashMap<Doctor, Integer> map = report.data();
             if (map.isEmpty()) {
                 System.out.println("No data.");
                 return;
@@ -88,23 +316,26 @@ public class ReportsMenu {
                         d.getSpecialty(),
                         count);
             }
+            printAsOf(report);
         } catch (SQLException e) {
             System.out.println("Database error while fetching doctor stats: " + e.getMessage());
         }
     }
 
     private void covidCases() {
-        try {
-            int count = reportsDAO.countCovidCases(connection);
-            System.out.println("\nNumber of COVID-related medical records: " + count);
+        try (Connection connection = dataSource.getConnection()) {
+            ReportSnapshot<Integer> report = reportsDAO.countCovidCases(connection);
+            System.out.println("\nNumber of COVID-related medical records: " + report.data());
+            printAsOf(report);
         } catch (SQLException e) {
             System.out.println("Database error while counting COVID cases: " + e.getMessage());
         }
     }
 
     private void bedOccupancy() {
-        try {
-            HashMap<String, Double> map = reportsDAO.bedOccupancyRatePerDepartment(connection);
+        try (Connection connection = dataSource.getConnection()) {
+            ReportSnapshot<HashMap<String, Double>> report = reportsDAO.bedOccupancyRatePerDepartment(connection);
+            HashMap<String, Double> map = report.data();
             if (map.isEmpty()) {
                 System.out.println("No data.");
                 return;
@@ -115,26 +346,29 @@ public class ReportsMenu {
                 double rate = e.getValue(); // 0.0–1.0
                 System.out.printf("- %s: %.2f%%%n", deptName, rate * 100);
             }
+            printAsOf(report);
         } catch (SQLException e) {
             System.out.println("Database error while fetching occupancy: " + e.getMessage());
         }
     }
 
     private void avgAgeAdmitted() {
-        try {
-            double avgAge = reportsDAO.averageAgeOfAdmittedPatients(connection);
-            System.out.printf("%nAverage age of admitted patients: %.1f years%n", avgAge);
+        try (Connection connection = dataSource.getConnection()) {
+            ReportSnapshot<Double> report = reportsDAO.averageAgeOfAdmittedPatients(connection);
+            System.out.printf("%nAverage age of admitted patients: %.1f years%n", report.data());
+            printAsOf(report);
         } catch (SQLException e) {
             System.out.println("Database error while fetching average age: " + e.getMessage());
         }
     }
 
     private void admissionsPerYear() {
-        try {
+        try (Connection connection = dataSource.getConnection()) {
             System.out.print("Enter year (e.g. 2025): ");
             int year = Integer.parseInt(scanner.nextLine());
 
-            HashMap<String, Integer> map = reportsDAO.admissionsPerDepartmentPerYear(year, connection);
+            ReportSnapshot<HashMap<String, Integer>> report = reportsDAO.admissionsPerDepartmentPerYear(year, connection);
+            HashMap<String, Integer> map = report.data();
             if (map.isEmpty()) {
                 System.out.println("No admissions found for that year.");
                 return;
@@ -143,6 +377,7 @@ public class ReportsMenu {
             for (Map.Entry<String, Integer> e : map.entrySet()) {
                 System.out.printf("- %s: %d admissions%n", e.getKey(), e.getValue());
             }
+            printAsOf(report);
         } catch (SQLException e) {
             System.out.println("Database error while fetching admissions: " + e.getMessage());
         } catch (NumberFormatException e) {
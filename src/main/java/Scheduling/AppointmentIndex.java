@@ -0,0 +1,132 @@
+package Scheduling;
+
+import Scheduling.DoctorSchedule.Booking;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of upcoming appointments per doctor, used to refuse double bookings before any SQL is sent.
+ * A doctor's schedule is loaded the first time that doctor is booked and then kept up to date by the
+ * AppointmentDAO writes. Reserving checks and records the slot in one step under the doctor's schedule lock,
+ * so two threads in this process cannot both book the same slot.
+ * The exclusion constraint in sql/appointment_overlap.sql remains the source of truth when several
+ * application instances share the database; if it fires, the doctor's schedule is dropped and reloaded.
+ */
+public class AppointmentIndex {
+
+    /** Every appointment is booked for one slot of this length. */
+    public static final Duration SLOT = Duration.ofMinutes(20);
+
+    /** Reads a doctor's appointment_id to appointment_datetime for appointments that have not ended yet. */
+    @FunctionalInterface
+    public interface ScheduleLoader {
+        Map<Integer, LocalDateTime> load(int doctorId) throws SQLException;
+    }
+
+    private record Placement(int doctorId, Booking booking) {
+    }
+
+    private final Map<Integer, DoctorSchedule> byDoctor = new ConcurrentHashMap<>();
+    private final Map<Integer, Placement> byAppointment = new ConcurrentHashMap<>();
+
+    /** A slot held in the index while the INSERT or UPDATE runs; confirm or cancel it afterwards. */
+    public final class Reservation {
+        private final Placement placement;
+        private final boolean added;
+
+        private Reservation(Placement placement, boolean added) {
+            this.placement = placement;
+            this.added = added;
+        }
+
+        /** The write committed: the appointment now lives only in its new slot. */
+        public void confirm() {
+            Placement previous = byAppointment.put(placement.booking().appointmentId(), placement);
+            if (previous != null && !previous.equals(placement)) {
+                DoctorSchedule schedule = byDoctor.get(previous.doctorId());
+                if (schedule != null) {
+                    synchronized (schedule) {
+                        schedule.remove(previous.booking());
+                    }
+                }
+            }
+        }
+
+        /** The write failed: free the slot again. */
+        public void cancel() {
+            DoctorSchedule schedule = byDoctor.get(placement.doctorId());
+            if (added && schedule != null) {
+                synchronized (schedule) {
+                    schedule.remove(placement.booking());
+                }
+            }
+        }
+    }
+
+    /**
+     * Holds the slot starting at start for the appointment, or throws IllegalArgumentException naming the
+     * appointment it would overlap. The appointment's own current slot never counts as a conflict, so
+     * moving an appointment by a few minutes works.
+     */
+    public Reservation reserve(int doctorId, int appointmentId, LocalDateTime start, ScheduleLoader loader)
+            throws SQLException {
+        DoctorSchedule schedule = scheduleOf(doctorId, loader);
+        Booking booking = new Booking(start, appointmentId);
+        boolean added;
+        synchronized (schedule) {
+            for (Booking b : schedule.pruneEnded(LocalDateTime.now())) {
+                byAppointment.remove(b.appointmentId(), new Placement(doctorId, b));
+            }
+
+            Booking conflict = schedule.conflict(start, appointmentId);
+            if (conflict != null) {
+                throw new IllegalArgumentException("Doctor " + doctorId + " already has appointment "
+                        + conflict.appointmentId() + " at " + conflict.start() + ".");
+            }
+            added = schedule.add(booking);
+        }
+        return new Reservation(new Placement(doctorId, booking), added);
+    }
+
+    /** The appointment was deleted. */
+    public void remove(int appointmentId) {
+        Placement placement = byAppointment.remove(appointmentId);
+        if (placement != null) {
+            DoctorSchedule schedule = byDoctor.get(placement.doctorId());
+            if (schedule != null) {
+                synchronized (schedule) {
+                    schedule.remove(placement.booking());
+                }
+            }
+        }
+    }
+
+    /** Drops what is known about the doctor; the next booking reloads it from the database. */
+    public void forget(int doctorId) {
+        byDoctor.remove(doctorId);
+        byAppointment.values().removeIf(p -> p.doctorId() == doctorId);
+    }
+
+    DoctorSchedule scheduleOf(int doctorId, ScheduleLoader loader) throws SQLException {
+        DoctorSchedule schedule = byDoctor.get(doctorId);
+        if (schedule != null) {
+            return schedule;
+        }
+        DoctorSchedule loaded = new DoctorSchedule();
+        for (Map.Entry<Integer, LocalDateTime> e : loader.load(doctorId).entrySet()) {
+            loaded.add(new Booking(e.getValue(), e.getKey()));
+        }
+        DoctorSchedule raced = byDoctor.putIfAbsent(doctorId, loaded);
+        if (raced != null) {
+            return raced;
+        }
+        for (Booking b : loaded.bookings()) {
+            byAppointment.put(b.appointmentId(), new Placement(doctorId, b));
+        }
+        return loaded;
+    }
+}
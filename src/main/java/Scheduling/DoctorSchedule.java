@@ -0,0 +1,115 @@
+package Scheduling;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * One doctor's booked appointments, ordered by start time.
+ * Every appointment lasts {@link AppointmentIndex#SLOT}, and with equal-length intervals this ordered set is
+ * all an interval tree needs to be: a new slot [s, s + SLOT) overlaps a booking exactly when the booking
+ * with the latest start before s + SLOT starts after s - SLOT, so a conflict check is one O(log n) lookup.
+ * The same bookings are also kept as a calendar for free-slot searches: one bucket per day, holding for
+ * each SLOT-long grid cell of that day (00:00, 00:20, ...) how many bookings overlap it. A booking that
+ * starts on the grid covers one cell, any other booking the two cells it straddles.
+ * Callers synchronise on the schedule.
+ */
+final class DoctorSchedule {
+
+    record Booking(LocalDateTime start, int appointmentId) {
+    }
+
+    private static final Comparator<Booking> ORDER =
+            Comparator.comparing(Booking::start).thenComparingInt(Booking::appointmentId);
+
+    static final int CELLS_PER_DAY = (int) Duration.ofDays(1).dividedBy(AppointmentIndex.SLOT);
+
+    private final NavigableSet<Booking> bookings = new TreeSet<>(ORDER);
+    private final NavigableMap<LocalDate, int[]> days = new TreeMap<>();
+
+    /** The booking overlapping a slot starting at start, ignoring the given appointment; null if none. */
+    Booking conflict(LocalDateTime start, int ignoredAppointmentId) {
+        LocalDateTime end = start.plus(AppointmentIndex.SLOT);
+        for (Booking b : bookings.headSet(new Booking(end, Integer.MIN_VALUE), false).descendingSet()) {
+            if (!b.start().isAfter(start.minus(AppointmentIndex.SLOT))) {
+                return null;
+            }
+            if (b.appointmentId() != ignoredAppointmentId) {
+                return b;
+            }
+            // the only candidate is the appointment being moved; look one further back
+        }
+        return null;
+    }
+
+    /** False if the exact booking was already there. */
+    boolean add(Booking booking) {
+        if (!bookings.add(booking)) {
+            return false;
+        }
+        mark(booking.start(), 1);
+        return true;
+    }
+
+    void remove(Booking booking) {
+        if (bookings.remove(booking)) {
+            mark(booking.start(), -1);
+        }
+    }
+
+    /** Removes and returns the bookings that ended before the given time; they can no longer conflict with anything. */
+    List<Booking> pruneEnded(LocalDateTime time) {
+        NavigableSet<Booking> ended = bookings.headSet(new Booking(time.minus(AppointmentIndex.SLOT), Integer.MIN_VALUE), false);
+        List<Booking> removed = new ArrayList<>(ended);
+        ended.clear();
+        removed.forEach(b -> mark(b.start(), -1));
+        days.headMap(time.toLocalDate()).clear();
+        return removed;
+    }
+
+    /**
+     * Start of the first free grid cell at or after from (which must be on the grid) and before to,
+     * counting only cells between opens and closes on each day; null if there is none.
+     */
+    LocalDateTime nextFree(LocalDateTime from, LocalDateTime to, LocalTime opens, LocalTime closes) {
+        int firstCell = cellOf(opens);
+        int endCell = cellOf(closes);
+        for (LocalDate day = from.toLocalDate(); day.atStartOfDay().isBefore(to); day = day.plusDays(1)) {
+            int[] counts = days.get(day);
+            int cell = day.equals(from.toLocalDate()) ? Math.max(firstCell, cellOf(from.toLocalTime())) : firstCell;
+            for (; cell < endCell; cell++) {
+                if (counts == null || counts[cell] == 0) {
+                    LocalDateTime start = day.atStartOfDay().plus(AppointmentIndex.SLOT.multipliedBy(cell));
+                    return start.isBefore(to) ? start : null;
+                }
+            }
+        }
+        return null;
+    }
+
+    static int cellOf(LocalTime time) {
+        return (int) (time.toNanoOfDay() / AppointmentIndex.SLOT.toNanos());
+    }
+
+    private void mark(LocalDateTime start, int delta) {
+        int first = cellOf(start.toLocalTime());
+        boolean onGrid = start.toLocalTime().toNanoOfDay() % AppointmentIndex.SLOT.toNanos() == 0;
+        int last = onGrid ? first : first + 1;
+        for (int cell = first; cell <= last; cell++) {
+            LocalDate day = start.toLocalDate().plusDays(cell / CELLS_PER_DAY);
+            days.computeIfAbsent(day, d -> new int[CELLS_PER_DAY])[cell % CELLS_PER_DAY] += delta;
+        }
+    }
+
+    NavigableSet<Booking> bookings() {
+        return bookings;
+    }
+}
@@ -0,0 +1,94 @@
+package Scheduling;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Finds free appointment slots across a group of doctors, typically everyone in a department.
+ * Slots are SLOT long and start on the SLOT grid within opening hours. Each doctor's calendar comes from
+ * the {@link AppointmentIndex}, so the search sees every booking made through AppointmentDAO and only
+ * doctors never seen before cost a query. The doctors' free slots are merged in time order with a
+ * priority queue holding one candidate per doctor: finding the first k slot times across d doctors reads
+ * roughly k + d free cells instead of every doctor's whole calendar.
+ */
+public class SlotFinder {
+
+    /** A slot start and every doctor of the group who is free at that time, by ascending id. */
+    public record FreeSlot(LocalDateTime start, List<Integer> doctorIds) {
+    }
+
+    private record Head(LocalDateTime start, int doctorId, DoctorSchedule schedule) {
+    }
+
+    private static final Comparator<Head> EARLIEST =
+            Comparator.comparing(Head::start).thenComparingInt(Head::doctorId);
+
+    private final AppointmentIndex index;
+    private final LocalTime opens;
+    private final LocalTime closes;
+
+    public SlotFinder(AppointmentIndex index, LocalTime opens, LocalTime closes) {
+        if (!opens.isBefore(closes) || !onGrid(opens) || !onGrid(closes)) {
+            throw new IllegalArgumentException("Opening hours must be on the " + AppointmentIndex.SLOT.toMinutes()
+                    + "-minute grid, opening before closing.");
+        }
+        this.index = index;
+        this.opens = opens;
+        this.closes = closes;
+    }
+
+    /** Up to limit slot times in [from, to), earliest first; slots in the past are never offered. */
+    public List<FreeSlot> find(Collection<Integer> doctorIds, LocalDateTime from, LocalDateTime to, int limit,
+                               AppointmentIndex.ScheduleLoader loader) throws SQLException {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive.");
+        }
+        LocalDateTime start = alignUp(from.isAfter(LocalDateTime.now()) ? from : LocalDateTime.now());
+
+        PriorityQueue<Head> heads = new PriorityQueue<>(EARLIEST);
+        for (int doctorId : new LinkedHashSet<>(doctorIds)) {
+            advance(heads, doctorId, index.scheduleOf(doctorId, loader), start, to);
+        }
+
+        List<FreeSlot> slots = new ArrayList<>(limit);
+        while (!heads.isEmpty() && slots.size() < limit) {
+            LocalDateTime time = heads.peek().start();
+            List<Integer> free = new ArrayList<>();
+            while (!heads.isEmpty() && heads.peek().start().equals(time)) {
+                Head head = heads.poll();
+                free.add(head.doctorId());
+                advance(heads, head.doctorId(), head.schedule(), time.plus(AppointmentIndex.SLOT), to);
+            }
+            slots.add(new FreeSlot(time, List.copyOf(free)));
+        }
+        return slots;
+    }
+
+    private void advance(PriorityQueue<Head> heads, int doctorId, DoctorSchedule schedule,
+                         LocalDateTime from, LocalDateTime to) {
+        LocalDateTime next;
+        synchronized (schedule) {
+            next = schedule.nextFree(from, to, opens, closes);
+        }
+        if (next != null) {
+            heads.add(new Head(next, doctorId, schedule));
+        }
+    }
+
+    private static LocalDateTime alignUp(LocalDateTime time) {
+        LocalDateTime cellStart = time.toLocalDate().atStartOfDay()
+                .plus(AppointmentIndex.SLOT.multipliedBy(DoctorSchedule.cellOf(time.toLocalTime())));
+        return cellStart.equals(time) ? time : cellStart.plus(AppointmentIndex.SLOT);
+    }
+
+    private static boolean onGrid(LocalTime time) {
+        return time.toNanoOfDay() % AppointmentIndex.SLOT.toNanos() == 0;
+    }
+}
@@ -0,0 +1,115 @@
+-- Admissions and discharges per department per day, behind DAOs.AdmissionRollupDAO.
+-- Any day, week, month or year range is a primary-key range scan over this table, summed with
+-- date_trunc; a department has at most 366 rows a year, however many patients it admits.
+-- An admission counts on the day of admit_datetime in its department, a discharge on the day of
+-- discharge_datetime in the department the patient was discharged from.
+--
+-- Statement-level triggers with transition tables keep the table current, one upsert per day and
+-- department touched by the statement, so a bulk import costs a few rows rather than one per stay.
+-- The script fills the table from hospitalization once when it is installed (and again on every re-run),
+-- like report_rebuild() in report_summaries.sql. AdmissionRollupDAO.backfill recomputes a date range,
+-- for any history changed with the triggers disabled.
+-- ReportSummaryDAO serves admissions per department per year from this table.
+
+CREATE TABLE IF NOT EXISTS admission_rollup_day (
+    day           DATE NOT NULL,
+    department_id INT NOT NULL,
+    admissions    BIGINT NOT NULL DEFAULT 0,
+    discharges    BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (day, department_id)
+);
+
+-- for the per-department queries
+CREATE INDEX IF NOT EXISTS idx_admission_rollup_department_day
+    ON admission_rollup_day (department_id, day);
+
+CREATE OR REPLACE FUNCTION admission_rollup_apply() RETURNS trigger AS $$
+BEGIN
+    -- a trigger function cannot pass its transition tables on, hence one statement per operation
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO admission_rollup_day AS r (day, department_id, admissions, discharges)
+        SELECT day, department_id, sum(a), sum(d)
+        FROM (SELECT admit_datetime::date AS day, department_id, 1 AS a, 0 AS d
+              FROM new_rows WHERE admit_datetime IS NOT NULL
+              UNION ALL
+              SELECT discharge_datetime::date, department_id, 0, 1
+              FROM new_rows WHERE discharge_datetime IS NOT NULL) c
+        GROUP BY day, department_id
+        ORDER BY day, department_id
+        ON CONFLICT (day, department_id) DO UPDATE SET
+            admissions = r.admissions + EXCLUDED.admissions,
+            discharges = r.discharges + EXCLUDED.discharges;
+    ELSIF TG_OP = 'DELETE' THEN
+        INSERT INTO admission_rollup_day AS r (day, department_id, admissions, discharges)
+        SELECT day, department_id, sum(a), sum(d)
+        FROM (SELECT admit_datetime::date AS day, department_id, -1 AS a, 0 AS d
+              FROM old_rows WHERE admit_datetime IS NOT NULL
+              UNION ALL
+              SELECT discharge_datetime::date, department_id, 0, -1
+              FROM old_rows WHERE discharge_datetime IS NOT NULL) c
+        GROUP BY day, department_id
+        ORDER BY day, department_id
+        ON CONFLICT (day, department_id) DO UPDATE SET
+            admissions = r.admissions + EXCLUDED.admissions,
+            discharges = r.discharges + EXCLUDED.discharges;
+    ELSE
+        INSERT INTO admission_rollup_day AS r (day, department_id, admissions, discharges)
+        SELECT day, department_id, sum(a), sum(d)
+        FROM (SELECT admit_datetime::date AS day, department_id, 1 AS a, 0 AS d
+              FROM new_rows WHERE admit_datetime IS NOT NULL
+              UNION ALL
+              SELECT discharge_datetime::date, department_id, 0, 1
+              FROM new_rows WHERE discharge_datetime IS NOT NULL
+              UNION ALL
+              SELECT admit_datetime::date, department_id, -1, 0
+              FROM old_rows WHERE admit_datetime IS NOT NULL
+              UNION ALL
+              SELECT discharge_datetime::date, department_id, 0, -1
+              FROM old_rows WHERE discharge_datetime IS NOT NULL) c
+        GROUP BY day, department_id
+        HAVING sum(a) <> 0 OR sum(d) <> 0
+        ORDER BY day, department_id
+        ON CONFLICT (day, department_id) DO UPDATE SET
+            admissions = r.admissions + EXCLUDED.admissions,
+            discharges = r.discharges + EXCLUDED.discharges;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- a trigger with transition tables can have only one event and no column list, hence three
+DROP TRIGGER IF EXISTS admission_rollup_insert ON hospitalization;
+CREATE TRIGGER admission_rollup_insert
+    AFTER INSERT ON hospitalization
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION admission_rollup_apply();
+
+DROP TRIGGER IF EXISTS admission_rollup_update ON hospitalization;
+CREATE TRIGGER admission_rollup_update
+    AFTER UPDATE ON hospitalization
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION admission_rollup_apply();
+
+DROP TRIGGER IF EXISTS admission_rollup_delete ON hospitalization;
+CREATE TRIGGER admission_rollup_delete
+    AFTER DELETE ON hospitalization
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION admission_rollup_apply();
+
+-- Fill from history. The lock waits for in-flight writes and holds new ones back until the DO block's
+-- transaction commits, so no change is counted twice or missed.
+DO $$
+BEGIN
+    LOCK TABLE hospitalization, admission_rollup_day IN SHARE ROW EXCLUSIVE MODE;
+
+    DELETE FROM admission_rollup_day;
+    INSERT INTO admission_rollup_day (day, department_id, admissions, discharges)
+    SELECT day, department_id, SUM(a), SUM(d)
+    FROM (SELECT admit_datetime::date AS day, department_id, 1 AS a, 0 AS d
+          FROM hospitalization WHERE admit_datetime IS NOT NULL
+          UNION ALL
+          SELECT discharge_datetime::date, department_id, 0, 1
+          FROM hospitalization WHERE discharge_datetime IS NOT NULL) c
+    GROUP BY day, department_id;
+END;
+$$;
@@ -0,0 +1,26 @@
+-- A doctor cannot have two appointments whose 20-minute slots overlap.
+-- This is the guarantee behind the in-memory schedule index (Scheduling.AppointmentIndex): the index
+-- refuses double bookings without a round-trip, but only knows about writes made by this process.
+-- When another application instance got there first, the insert or update fails with an exclusion
+-- violation (23P01) and AppointmentDAO reloads that doctor's schedule.
+-- The slot length must match AppointmentIndex.SLOT. appointment_datetime is a timestamp without time
+-- zone, so tsrange (not tstzrange) is the matching range type; btree_gist lets the gist index compare
+-- doctor_id with =. Imports.CsvImporter rejects overlapping rows with the same slot expression.
+
+CREATE EXTENSION IF NOT EXISTS btree_gist;
+
+-- safe to run again: the constraint is only added if it is not there yet
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint
+                   WHERE conname = 'appointment_no_double_booking'
+                     AND conrelid = 'appointment'::regclass) THEN
+        ALTER TABLE appointment
+            ADD CONSTRAINT appointment_no_double_booking
+            EXCLUDE USING gist (
+                doctor_id WITH =,
+                tsrange(appointment_datetime, appointment_datetime + interval '20 minutes') WITH &&
+            );
+    END IF;
+END;
+$$;
@@ -0,0 +1,7 @@
+-- Index behind AppointmentDAO.streamRange when it is filtered by doctor.
+-- Unfiltered and per-department ranges use idx_appointment_datetime_id from keyset_indexes.sql.
+-- Both match the scan's ORDER BY, so rows come off the index already sorted and the cursor can start
+-- returning them before the whole range has been read.
+
+CREATE INDEX IF NOT EXISTS idx_appointment_doctor_datetime_id
+    ON appointment (doctor_id, appointment_datetime, appointment_id);
@@ -0,0 +1,13 @@
+-- A bed can hold only one open hospitalization at a time.
+-- This is the guarantee behind the in-memory bed allocator (Beds.BedAllocator): two admissions racing
+-- for the same bed, from this or any other application instance, cannot both commit, whatever the
+-- transaction isolation level. The loser gets a unique violation (23505) and HospitalizationDAO.insert
+-- moves on to the next free bed.
+-- Discharged rows are outside the index, so a bed can be reused as soon as its patient leaves.
+-- The index is checked row by row and is deliberately not deferrable, since insert relies on the
+-- immediate 23505; HospitalizationDAO.transferAll moves patients within one department in two steps
+-- (parked on placeholder beds, then placed) so that swaps and chains of beds do not trip it.
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_hospitalization_open_bed
+    ON hospitalization (department_id, bed_number)
+    WHERE discharge_datetime IS NULL;
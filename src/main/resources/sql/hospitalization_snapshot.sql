@@ -0,0 +1,7 @@
+-- Index behind HospitalizationDAO.streamChangedSince, which Analytics.HospitalizationSnapshot runs on
+-- every refresh. The other two arms of its WHERE clause are served by uq_hospitalization_open_bed
+-- (open stays) and idx_hospitalization_admit_id (recent admissions).
+
+CREATE INDEX IF NOT EXISTS idx_hospitalization_discharge
+    ON hospitalization (discharge_datetime)
+    WHERE discharge_datetime IS NOT NULL;
@@ -0,0 +1,12 @@
+-- Composite indexes backing the keyset-paginated findPage methods.
+-- patient_id and doctor_id pages are served by the primary keys.
+-- Each index matches the ORDER BY of its query, so a page is a single index range scan.
+
+CREATE INDEX IF NOT EXISTS idx_appointment_datetime_id
+    ON appointment (appointment_datetime, appointment_id);
+
+CREATE INDEX IF NOT EXISTS idx_medical_record_datetime_id
+    ON medical_record (record_datetime DESC, record_id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_hospitalization_admit_id
+    ON hospitalization (admit_datetime DESC, hospitalization_id DESC);
@@ -0,0 +1,65 @@
+-- Publishes every change in the number of open hospitalizations per department on the "occupancy"
+-- channel, for Beds.OccupancyTracker.
+-- The triggers are per statement and read the transition tables, so a bulk import or a batch discharge
+-- sends one notification with the net change per department rather than one per row.
+-- Payload: <xid>:<event>:<department_id>=<delta>[,<department_id>=<delta>...]
+--   xid   the writing transaction (pg_current_xact_id); the tracker skips transactions already visible
+--         in the snapshot it last counted from, so nothing is counted twice after a resync
+--   event a sequence number; it only keeps payloads distinct, because NOTIFY folds identical payloads
+--         sent by one transaction into a single event
+-- Notifications are delivered when the transaction commits and never for one that rolls back.
+
+CREATE SEQUENCE IF NOT EXISTS occupancy_event_seq;
+
+CREATE OR REPLACE FUNCTION occupancy_notify() RETURNS trigger AS $$
+DECLARE
+    changes TEXT;
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        SELECT string_agg(department_id || '=' || n, ',') INTO changes
+        FROM (SELECT department_id, count(*) AS n
+              FROM new_rows
+              WHERE discharge_datetime IS NULL
+              GROUP BY department_id) d;
+    ELSIF TG_OP = 'DELETE' THEN
+        SELECT string_agg(department_id || '=' || -n, ',') INTO changes
+        FROM (SELECT department_id, count(*) AS n
+              FROM old_rows
+              WHERE discharge_datetime IS NULL
+              GROUP BY department_id) d;
+    ELSE
+        SELECT string_agg(department_id || '=' || n, ',') INTO changes
+        FROM (SELECT department_id, sum(delta) AS n
+              FROM (SELECT department_id, 1 AS delta FROM new_rows WHERE discharge_datetime IS NULL
+                    UNION ALL
+                    SELECT department_id, -1 FROM old_rows WHERE discharge_datetime IS NULL) c
+              GROUP BY department_id
+              HAVING sum(delta) <> 0) d;
+    END IF;
+
+    IF changes IS NOT NULL THEN
+        PERFORM pg_notify('occupancy',
+                pg_current_xact_id() || ':' || nextval('occupancy_event_seq') || ':' || changes);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- a trigger with transition tables can have only one event, hence three
+DROP TRIGGER IF EXISTS occupancy_insert ON hospitalization;
+CREATE TRIGGER occupancy_insert
+    AFTER INSERT ON hospitalization
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION occupancy_notify();
+
+DROP TRIGGER IF EXISTS occupancy_update ON hospitalization;
+CREATE TRIGGER occupancy_update
+    AFTER UPDATE ON hospitalization
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION occupancy_notify();
+
+DROP TRIGGER IF EXISTS occupancy_delete ON hospitalization;
+CREATE TRIGGER occupancy_delete
+    AFTER DELETE ON hospitalization
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION occupancy_notify();
@@ -0,0 +1,339 @@
+-- Pre-aggregated tables behind DAOs.ReportSummaryDAO, so a report reads a handful of summary rows
+-- instead of re-aggregating hospitalization, medical_record and patient.
+--
+-- Statement-level triggers fold every admission, discharge, transfer and medical record into the
+-- summaries inside the writing transaction, so the figures are as current as the data they summarise.
+-- Each trigger reads its transition tables, nets the changes per summary row and upserts them in key
+-- order, so a bulk statement costs one upsert per department or doctor it touches, and two statements
+-- touching the same rows lock them in the same order and cannot deadlock each other.
+-- The single figures are split into REPORT_TOTAL_PARTS rows by patient, summed when read, so that
+-- unrelated admissions and records do not queue on one counter row.
+-- A patient's corrected date of birth is carried into the average-age figures by its own trigger.
+-- report_rebuild() recomputes everything from scratch; it runs once below when the script is installed
+-- and otherwise only on request (reports menu). It takes SHARE locks on the source tables, so writes
+-- wait while it runs; report readers keep seeing the previous figures until it commits.
+-- Every summary row carries as_of: when the newest change it reflects was applied.
+--
+-- COVID cases are records whose diagnosis contains "covid" (which also covers COVID19).
+-- Average age is kept as a count and a sum of birth dates (days since 1970-01-01) of admitted patients
+-- with a known date of birth, so it is the mean exact age rather than the mean of completed years.
+
+CREATE TABLE IF NOT EXISTS report_department (
+    department_id    INT PRIMARY KEY,
+    current_patients INT NOT NULL DEFAULT 0,
+    discharged_stays BIGINT NOT NULL DEFAULT 0,
+    total_stay_days  DOUBLE PRECISION NOT NULL DEFAULT 0,
+    as_of            TIMESTAMP NOT NULL DEFAULT LOCALTIMESTAMP
+);
+
+-- records per (doctor, patient), so the distinct-patient count knows when a pair appears or disappears
+CREATE TABLE IF NOT EXISTS report_doctor_patient (
+    doctor_id  INT NOT NULL,
+    patient_id INT NOT NULL,
+    records    BIGINT NOT NULL,
+    PRIMARY KEY (doctor_id, patient_id)
+);
+
+CREATE TABLE IF NOT EXISTS report_doctor (
+    doctor_id     INT PRIMARY KEY,
+    patient_count INT NOT NULL DEFAULT 0,
+    as_of         TIMESTAMP NOT NULL DEFAULT LOCALTIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_report_doctor_patient_count
+    ON report_doctor (patient_count DESC);
+
+-- stays per patient; birth_day is remembered so the patient is subtracted exactly as they were added
+CREATE TABLE IF NOT EXISTS report_admitted_patient (
+    patient_id INT PRIMARY KEY,
+    stays      BIGINT NOT NULL,
+    birth_day  INT
+);
+
+-- single figures (covid_cases, admitted_patients, admitted_birth_days), part = patient_id % 64
+CREATE TABLE IF NOT EXISTS report_total_part (
+    name  TEXT NOT NULL,
+    part  INT NOT NULL,
+    value DOUBLE PRECISION NOT NULL DEFAULT 0,
+    as_of TIMESTAMP NOT NULL DEFAULT LOCALTIMESTAMP,
+    PRIMARY KEY (name, part)
+);
+
+CREATE OR REPLACE FUNCTION report_total_part_of(patient_id INT) RETURNS INT AS $$
+    SELECT COALESCE(patient_id, 0) % 64;
+$$ LANGUAGE sql IMMUTABLE;
+
+-- Takes the removed rows out of every summary and puts the added ones in; an UPDATE is both.
+-- The rows come as arrays because a trigger function cannot hand its transition tables on; ROW(n.*)
+-- turns a transition-table row back into the table's row type.
+CREATE OR REPLACE FUNCTION report_apply_hospitalizations(added hospitalization[], removed hospitalization[])
+RETURNS void AS $$
+BEGIN
+    INSERT INTO report_department AS r (department_id, current_patients, discharged_stays, total_stay_days, as_of)
+    SELECT department_id,
+           COALESCE(SUM(sign) FILTER (WHERE discharge_datetime IS NULL), 0),
+           COALESCE(SUM(sign) FILTER (WHERE discharge_datetime IS NOT NULL), 0),
+           COALESCE(SUM(sign * EXTRACT(EPOCH FROM (discharge_datetime - admit_datetime)) / 86400.0), 0),
+           LOCALTIMESTAMP
+    FROM (SELECT 1 AS sign, a.* FROM unnest(added) a
+          UNION ALL
+          SELECT -1, o.* FROM unnest(removed) o) c
+    GROUP BY department_id
+    HAVING SUM(sign) FILTER (WHERE discharge_datetime IS NULL) <> 0
+        OR SUM(sign) FILTER (WHERE discharge_datetime IS NOT NULL) <> 0
+        OR SUM(sign * EXTRACT(EPOCH FROM (discharge_datetime - admit_datetime))) <> 0
+    ORDER BY department_id
+    ON CONFLICT (department_id) DO UPDATE SET
+        current_patients = r.current_patients + EXCLUDED.current_patients,
+        discharged_stays = r.discharged_stays + EXCLUDED.discharged_stays,
+        total_stay_days  = r.total_stay_days + EXCLUDED.total_stay_days,
+        as_of            = EXCLUDED.as_of;
+
+    -- stays per patient; a patient counts towards the average age while they have any
+    WITH delta AS (
+        SELECT patient_id, SUM(sign) AS stays
+        FROM (SELECT 1 AS sign, a.patient_id FROM unnest(added) a
+              UNION ALL
+              SELECT -1, o.patient_id FROM unnest(removed) o) c
+        WHERE patient_id IS NOT NULL
+        GROUP BY patient_id
+        HAVING SUM(sign) <> 0
+    ), counted AS (
+        INSERT INTO report_admitted_patient AS r (patient_id, stays, birth_day)
+        SELECT d.patient_id, d.stays, p.date_of_birth - DATE '1970-01-01'
+        FROM delta d
+        LEFT JOIN patient p ON p.patient_id = d.patient_id
+        ORDER BY d.patient_id
+        ON CONFLICT (patient_id) DO UPDATE SET stays = r.stays + EXCLUDED.stays
+        RETURNING r.patient_id, r.stays, r.birth_day
+    ), crossed AS (
+        -- +1 for a patient whose first stay arrived, -1 for one whose last stay went
+        SELECT c.patient_id, c.birth_day,
+               CASE WHEN c.stays > 0 AND c.stays - d.stays <= 0 THEN 1
+                    WHEN c.stays <= 0 AND c.stays - d.stays > 0 THEN -1
+                    ELSE 0 END AS sign
+        FROM counted c
+        JOIN delta d ON d.patient_id = c.patient_id
+        WHERE c.birth_day IS NOT NULL
+    )
+    INSERT INTO report_total_part AS r (name, part, value, as_of)
+    SELECT t.name, report_total_part_of(x.patient_id) AS part,
+           SUM(x.sign * CASE WHEN t.name = 'admitted_patients' THEN 1 ELSE x.birth_day END), LOCALTIMESTAMP
+    FROM crossed x
+    CROSS JOIN (VALUES ('admitted_birth_days'), ('admitted_patients')) AS t(name)
+    WHERE x.sign <> 0
+    GROUP BY t.name, part
+    ORDER BY t.name, part
+    ON CONFLICT (name, part) DO UPDATE SET value = r.value + EXCLUDED.value, as_of = EXCLUDED.as_of;
+
+    DELETE FROM report_admitted_patient
+    WHERE stays <= 0
+      AND patient_id IN (SELECT patient_id FROM unnest(removed));
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION report_apply_medical_records(added medical_record[], removed medical_record[])
+RETURNS void AS $$
+BEGIN
+    INSERT INTO report_total_part AS r (name, part, value, as_of)
+    SELECT 'covid_cases', report_total_part_of(patient_id) AS part, SUM(sign), LOCALTIMESTAMP
+    FROM (SELECT 1 AS sign, a.* FROM unnest(added) a
+          UNION ALL
+          SELECT -1, o.* FROM unnest(removed) o) c
+    WHERE LOWER(diagnosis) LIKE '%covid%'
+    GROUP BY part
+    HAVING SUM(sign) <> 0
+    ORDER BY part
+    ON CONFLICT (name, part) DO UPDATE SET value = r.value + EXCLUDED.value, as_of = EXCLUDED.as_of;
+
+    -- records per (doctor, patient); a doctor's patient count changes when a pair appears or disappears
+    WITH delta AS (
+        SELECT doctor_id, patient_id, SUM(sign) AS records
+        FROM (SELECT 1 AS sign, a.doctor_id, a.patient_id FROM unnest(added) a
+              UNION ALL
+              SELECT -1, o.doctor_id, o.patient_id FROM unnest(removed) o) c
+        WHERE doctor_id IS NOT NULL AND patient_id IS NOT NULL
+        GROUP BY doctor_id, patient_id
+        HAVING SUM(sign) <> 0
+    ), counted AS (
+        INSERT INTO report_doctor_patient AS r (doctor_id, patient_id, records)
+        SELECT doctor_id, patient_id, records
+        FROM delta
+        ORDER BY doctor_id, patient_id
+        ON CONFLICT (doctor_id, patient_id) DO UPDATE SET records = r.records + EXCLUDED.records
+        RETURNING r.doctor_id, r.patient_id, r.records
+    )
+    INSERT INTO report_doctor AS r (doctor_id, patient_count, as_of)
+    SELECT c.doctor_id,
+           SUM(CASE WHEN c.records > 0 AND c.records - d.records <= 0 THEN 1
+                    WHEN c.records <= 0 AND c.records - d.records > 0 THEN -1
+                    ELSE 0 END) AS change,
+           LOCALTIMESTAMP
+    FROM counted c
+    JOIN delta d ON d.doctor_id = c.doctor_id AND d.patient_id = c.patient_id
+    GROUP BY c.doctor_id
+    HAVING SUM(CASE WHEN c.records > 0 AND c.records - d.records <= 0 THEN 1
+                    WHEN c.records <= 0 AND c.records - d.records > 0 THEN -1
+                    ELSE 0 END) <> 0
+    ORDER BY c.doctor_id
+    ON CONFLICT (doctor_id) DO UPDATE SET
+        patient_count = r.patient_count + EXCLUDED.patient_count,
+        as_of         = EXCLUDED.as_of;
+
+    DELETE FROM report_doctor_patient
+    WHERE records <= 0
+      AND (doctor_id, patient_id) IN (SELECT doctor_id, patient_id FROM unnest(removed));
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION report_hospitalization_changed() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        PERFORM report_apply_hospitalizations(ARRAY(SELECT ROW(n.*)::hospitalization FROM new_rows n), '{}');
+    ELSIF TG_OP = 'DELETE' THEN
+        PERFORM report_apply_hospitalizations('{}', ARRAY(SELECT ROW(o.*)::hospitalization FROM old_rows o));
+    ELSE
+        PERFORM report_apply_hospitalizations(ARRAY(SELECT ROW(n.*)::hospitalization FROM new_rows n), ARRAY(SELECT ROW(o.*)::hospitalization FROM old_rows o));
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION report_medical_record_changed() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        PERFORM report_apply_medical_records(ARRAY(SELECT ROW(n.*)::medical_record FROM new_rows n), '{}');
+    ELSIF TG_OP = 'DELETE' THEN
+        PERFORM report_apply_medical_records('{}', ARRAY(SELECT ROW(o.*)::medical_record FROM old_rows o));
+    ELSE
+        PERFORM report_apply_medical_records(ARRAY(SELECT ROW(n.*)::medical_record FROM new_rows n), ARRAY(SELECT ROW(o.*)::medical_record FROM old_rows o));
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- a trigger with transition tables can have only one event and no column list, hence three per table;
+-- an UPDATE that touches no summarised column nets out to nothing and writes nothing
+DROP TRIGGER IF EXISTS report_hospitalization_insert ON hospitalization;
+CREATE TRIGGER report_hospitalization_insert
+    AFTER INSERT ON hospitalization
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION report_hospitalization_changed();
+
+DROP TRIGGER IF EXISTS report_hospitalization_update ON hospitalization;
+CREATE TRIGGER report_hospitalization_update
+    AFTER UPDATE ON hospitalization
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION report_hospitalization_changed();
+
+DROP TRIGGER IF EXISTS report_hospitalization_delete ON hospitalization;
+CREATE TRIGGER report_hospitalization_delete
+    AFTER DELETE ON hospitalization
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION report_hospitalization_changed();
+
+DROP TRIGGER IF EXISTS report_medical_record_insert ON medical_record;
+CREATE TRIGGER report_medical_record_insert
+    AFTER INSERT ON medical_record
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION report_medical_record_changed();
+
+DROP TRIGGER IF EXISTS report_medical_record_update ON medical_record;
+CREATE TRIGGER report_medical_record_update
+    AFTER UPDATE ON medical_record
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION report_medical_record_changed();
+
+DROP TRIGGER IF EXISTS report_medical_record_delete ON medical_record;
+CREATE TRIGGER report_medical_record_delete
+    AFTER DELETE ON medical_record
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION report_medical_record_changed();
+
+-- A corrected date of birth moves an admitted patient's birth_day, and the average-age totals with it.
+-- Per row: corrections are single edits, and only rows whose date of birth really changed fire.
+CREATE OR REPLACE FUNCTION report_patient_birth_changed() RETURNS trigger AS $$
+DECLARE
+    old_birth INT;
+    new_birth INT := NEW.date_of_birth - DATE '1970-01-01';
+BEGIN
+    SELECT birth_day INTO old_birth
+    FROM report_admitted_patient
+    WHERE patient_id = NEW.patient_id
+    FOR UPDATE;
+    IF NOT FOUND THEN
+        RETURN NULL; -- never admitted, not in the figures
+    END IF;
+
+    UPDATE report_admitted_patient SET birth_day = new_birth WHERE patient_id = NEW.patient_id;
+
+    INSERT INTO report_total_part AS r (name, part, value, as_of)
+    SELECT t.name, report_total_part_of(NEW.patient_id), t.delta, LOCALTIMESTAMP
+    FROM (VALUES ('admitted_birth_days', COALESCE(new_birth, 0) - COALESCE(old_birth, 0)),
+                 ('admitted_patients', (new_birth IS NOT NULL)::INT - (old_birth IS NOT NULL)::INT)) AS t(name, delta)
+    WHERE t.delta <> 0
+    ORDER BY t.name
+    ON CONFLICT (name, part) DO UPDATE SET value = r.value + EXCLUDED.value, as_of = EXCLUDED.as_of;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS report_patient_birth ON patient;
+CREATE TRIGGER report_patient_birth
+    AFTER UPDATE OF date_of_birth ON patient
+    FOR EACH ROW
+    WHEN (OLD.date_of_birth IS DISTINCT FROM NEW.date_of_birth)
+    EXECUTE FUNCTION report_patient_birth_changed();
+
+CREATE OR REPLACE FUNCTION report_rebuild() RETURNS void AS $$
+BEGIN
+    LOCK TABLE hospitalization, medical_record, patient IN SHARE MODE;
+
+    DELETE FROM report_department;
+    INSERT INTO report_department (department_id, current_patients, discharged_stays, total_stay_days, as_of)
+    SELECT department_id,
+           COUNT(*) FILTER (WHERE discharge_datetime IS NULL),
+           COUNT(*) FILTER (WHERE discharge_datetime IS NOT NULL),
+           COALESCE(SUM(EXTRACT(EPOCH FROM (discharge_datetime - admit_datetime)) / 86400.0), 0),
+           LOCALTIMESTAMP
+    FROM hospitalization
+    GROUP BY department_id;
+
+    DELETE FROM report_admitted_patient;
+    INSERT INTO report_admitted_patient (patient_id, stays, birth_day)
+    SELECT p.patient_id, COUNT(*), p.date_of_birth - DATE '1970-01-01'
+    FROM hospitalization h
+    JOIN patient p ON p.patient_id = h.patient_id
+    GROUP BY p.patient_id, p.date_of_birth;
+
+    DELETE FROM report_doctor_patient;
+    INSERT INTO report_doctor_patient (doctor_id, patient_id, records)
+    SELECT doctor_id, patient_id, COUNT(*)
+    FROM medical_record
+    WHERE doctor_id IS NOT NULL AND patient_id IS NOT NULL
+    GROUP BY doctor_id, patient_id;
+
+    DELETE FROM report_doctor;
+    INSERT INTO report_doctor (doctor_id, patient_count, as_of)
+    SELECT doctor_id, COUNT(*), LOCALTIMESTAMP
+    FROM report_doctor_patient
+    GROUP BY doctor_id;
+
+    DELETE FROM report_total_part;
+    INSERT INTO report_total_part (name, part, value, as_of)
+    SELECT 'covid_cases', report_total_part_of(patient_id), COUNT(*), LOCALTIMESTAMP
+    FROM medical_record
+    WHERE LOWER(diagnosis) LIKE '%covid%'
+    GROUP BY 2
+    UNION ALL
+    SELECT 'admitted_patients', report_total_part_of(patient_id), COUNT(birth_day), LOCALTIMESTAMP
+    FROM report_admitted_patient
+    GROUP BY 2
+    UNION ALL
+    SELECT 'admitted_birth_days', report_total_part_of(patient_id), COALESCE(SUM(birth_day), 0), LOCALTIMESTAMP
+    FROM report_admitted_patient
+    GROUP BY 2;
+END;
+$$ LANGUAGE plpgsql;
+
+SELECT report_rebuild();